@@ -1,10 +1,10 @@
 package me.mgin.graves;
 
-import com.mojang.authlib.GameProfile;
 import me.mgin.graves.api.InventoriesApi;
 import me.mgin.graves.block.GraveBlocks;
 import me.mgin.graves.command.Commands;
 import me.mgin.graves.config.ConfigOptions;
+import me.mgin.graves.config.ConfigResolver;
 import me.mgin.graves.config.GravesConfig;
 import me.mgin.graves.effects.GraveEffects;
 import me.mgin.graves.event.Events;
@@ -29,13 +29,13 @@ public class Graves implements ModInitializer {
     public static final ArrayList<String> unloadedInventories = new ArrayList<>();
     public static String MOD_ID = "forgottengraves";
     public static String BRAND_BLOCK = "grave";
-    public static Map<GameProfile, GravesConfig> clientConfigs = new HashMap<>();
 
     @Override
     public void onInitialize() {
         // Register Config
         AutoConfig.register(GravesConfig.class, GsonConfigSerializer::new);
         ConfigOptions.generateConfigOptions();
+        ConfigResolver.initialize();
 
         // Graves Registry
         GraveBlocks.registerServerBlocks(MOD_ID, BRAND_BLOCK);
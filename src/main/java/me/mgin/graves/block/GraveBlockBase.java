@@ -47,7 +47,6 @@ public class GraveBlockBase extends HorizontalFacingBlock implements BlockEntity
     public boolean brokenByPlayer = false;
     public String blockID;
     public static final BooleanProperty WATERLOGGED = Properties.WATERLOGGED;
-    private boolean countingSeconds = false;
 
     public GraveBlockBase(BlockDecay blockDecay, Settings settings, String blockID) {
         super(settings);
@@ -114,6 +113,9 @@ public class GraveBlockBase extends HorizontalFacingBlock implements BlockEntity
 
         if (world.isClient) return ActionResult.PASS;
 
+        // The grave may be due to decay before it's used
+        DecayStateManager.updateDecay(world, pos);
+
         if (hand != Hand.OFF_HAND) {
             if (player.getStackInHand(hand).isEmpty() && Permission.playerCanUseGrave(player, graveEntity)) {
                 RetrieveGrave.retrieveWithInteract(player, world, pos);
@@ -239,57 +241,24 @@ public class GraveBlockBase extends HorizontalFacingBlock implements BlockEntity
     }
 
     // Decay
-    @Override
-    public void onBlockAdded(BlockState state, World world, BlockPos pos, BlockState oldState, boolean notify) {
-        if (!world.isClient) {
-            // Schedule initial tick for counter
-            world.scheduleBlockTick(pos, this, 20);
-        }
-    }
-
+    /**
+     * Graves no longer schedule ticks to count their time in stage; this only lets ticks scheduled by older versions
+     * run out.
+     */
     @Override
     public void scheduledTick(BlockState state, ServerWorld world, BlockPos pos, Random random) {
         super.scheduledTick(state, world, pos, random);
-
-        if (!world.isClient()) {
-            GraveBlockEntity entity = (GraveBlockEntity) world.getBlockEntity(pos);
-            GravesConfig config = GravesConfig.getConfig();
-            boolean inFinalStage = this.getDecayStage() == BlockDecay.FORGOTTEN;
-            boolean decaying = config.decay.decayEnabled && entity.getNoDecay() == 0;
-
-            // This is needed to make old graves start ticking; if countingSeconds is false when the old grave
-            // gets a random tick, it'll schedule ticks.
-            if (!this.countingSeconds) this.countingSeconds = true;
-
-            if (decaying && !inFinalStage) {
-                entity.incrementTimer("decay", 1);
-
-                int secondsInStage = entity.getTimer("decay");
-                int maxStageTimeSeconds = config.decay.maxStageTimeSeconds;
-
-                // If the maxStageTimeSeconds is 0 then maxStageTimeSeconds is effectively disabled.
-                if (maxStageTimeSeconds > 0 && secondsInStage >= maxStageTimeSeconds) {
-                    DecayStateManager.increaseDecayState(world, pos);
-                }
-            }
-
-            // Reschedule the next tick
-            world.scheduleBlockTick(pos, this, 20);
-        }
+        DecayStateManager.updateDecay(world, pos);
     }
 
     @Override
     public void randomTick(BlockState state, ServerWorld world, BlockPos pos, Random random) {
-        if (!world.isClient && !this.countingSeconds) {
-            // Schedule initial tick for counter if it's not already running
-            world.scheduleBlockTick(pos, this, 20);
-        }
+        if (DecayStateManager.updateDecay(world, pos)) return;
 
         GraveBlockEntity entity = (GraveBlockEntity) world.getBlockEntity(pos);
-        int secondsInStage = entity.getTimer("decay");
-        int minStageTimeSeconds = GravesConfig.getConfig().decay.minStageTimeSeconds;
+        long minStageTimeTicks = GravesConfig.getConfig().decay.minStageTimeSeconds * 20L;
 
-        if (secondsInStage >= minStageTimeSeconds) {
+        if (entity.getTicksInStage() >= minStageTimeTicks) {
             this.tickDecay(state, world, pos, random);
         }
     }
@@ -0,0 +1,150 @@
+package me.mgin.graves.block.decay;
+
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import it.unimi.dsi.fastutil.longs.LongLinkedOpenHashSet;
+import it.unimi.dsi.fastutil.longs.LongSet;
+import me.mgin.graves.block.entity.GraveBlockEntity;
+import net.minecraft.block.entity.BlockEntity;
+import net.minecraft.registry.RegistryKey;
+import net.minecraft.server.world.ServerWorld;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.world.World;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Advances the decay stage of graves the moment they have spent maxStageTimeSeconds in it.
+ * <p>
+ * Every world keeps the graves of its loaded chunks in a {@link TimingWheel}, keyed by their position and the world
+ * time of their next stage transition. At the end of each world tick the wheel is moved forward and the graves that
+ * came due are advanced as one batch, so the cost of decay scales with the transitions that happen during a tick
+ * rather than with the number of graves.
+ * <p>
+ * A grave is (re)scheduled whenever its decay is evaluated. Graves are evaluated once their chunk has loaded, at the
+ * end of the world tick rather than while the chunk is being loaded, since advancing a grave's stage replaces its
+ * block. Graves whose chunk unloads are dropped from the wheel until it loads again. Only the server thread touches
+ * the schedulers.
+ */
+public class DecayScheduler {
+    private static final Map<RegistryKey<World>, DecayScheduler> schedulers = new HashMap<>();
+
+    private final LongSet loaded = new LongLinkedOpenHashSet();
+    private final LongArrayList due = new LongArrayList();
+    private final TimingWheel wheel;
+
+    private DecayScheduler(ServerWorld world) {
+        this.wheel = new TimingWheel(world.getTime());
+    }
+
+    private static DecayScheduler get(ServerWorld world) {
+        return schedulers.computeIfAbsent(world.getRegistryKey(), key -> new DecayScheduler(world));
+    }
+
+    /**
+     * Queues a grave that was just loaded to be evaluated at the end of the tick.
+     *
+     * @param blockEntity BlockEntity
+     * @param world ServerWorld
+     */
+    public static void onLoad(BlockEntity blockEntity, ServerWorld world) {
+        if (!(blockEntity instanceof GraveBlockEntity)) return;
+
+        get(world).loaded.add(blockEntity.getPos().asLong());
+    }
+
+    /**
+     * Drops a grave that was unloaded or removed from the wheel; it's scheduled again once it loads.
+     *
+     * @param blockEntity BlockEntity
+     * @param world ServerWorld
+     */
+    public static void onUnload(BlockEntity blockEntity, ServerWorld world) {
+        if (!(blockEntity instanceof GraveBlockEntity)) return;
+
+        DecayScheduler scheduler = schedulers.get(world.getRegistryKey());
+        if (scheduler == null) return;
+
+        long pos = blockEntity.getPos().asLong();
+        scheduler.loaded.remove(pos);
+        scheduler.wheel.cancel(pos);
+    }
+
+    /**
+     * Schedules the grave's next stage transition at the given world time.
+     *
+     * @param world ServerWorld
+     * @param pos BlockPos
+     * @param time long
+     */
+    public static void schedule(ServerWorld world, BlockPos pos, long time) {
+        get(world).wheel.schedule(pos.asLong(), time);
+    }
+
+    /**
+     * Cancels the grave's next stage transition, if it had one.
+     *
+     * @param world ServerWorld
+     * @param pos BlockPos
+     */
+    public static void cancel(ServerWorld world, BlockPos pos) {
+        DecayScheduler scheduler = schedulers.get(world.getRegistryKey());
+        if (scheduler != null) scheduler.wheel.cancel(pos.asLong());
+    }
+
+    /**
+     * Evaluates the graves of the given world that were loaded during the tick, then advances every grave whose
+     * stage transition is due; called at the end of every world tick.
+     *
+     * @param world ServerWorld
+     */
+    public static void tick(ServerWorld world) {
+        DecayScheduler scheduler = schedulers.get(world.getRegistryKey());
+        if (scheduler == null) return;
+
+        if (!scheduler.loaded.isEmpty()) {
+            long[] queued = scheduler.loaded.toLongArray();
+            scheduler.loaded.clear();
+
+            for (long packed : queued) {
+                BlockPos pos = BlockPos.fromLong(packed);
+                if (isChunkLoaded(world, pos)) DecayStateManager.updateDecay(world, pos);
+            }
+        }
+
+        // Transitions replace blocks and reschedule graves, so they're only made once the wheel has been advanced
+        LongArrayList due = scheduler.due;
+        scheduler.wheel.advance(world.getTime(), due::add);
+        if (due.isEmpty()) return;
+
+        long[] positions = due.toLongArray();
+        due.clear();
+
+        for (long packed : positions) {
+            BlockPos pos = BlockPos.fromLong(packed);
+
+            // Graves in chunks that have unloaded since are scheduled again when they load
+            if (!isChunkLoaded(world, pos)) continue;
+
+            DecayStateManager.updateDecay(world, pos);
+        }
+    }
+
+    /**
+     * Whether the grave's chunk is loaded; evaluating a grave in an unloaded chunk would load it synchronously.
+     *
+     * @param world ServerWorld
+     * @param pos BlockPos
+     * @return boolean
+     */
+    private static boolean isChunkLoaded(ServerWorld world, BlockPos pos) {
+        return world.getChunkManager().getWorldChunk(pos.getX() >> 4, pos.getZ() >> 4) != null;
+    }
+
+    /**
+     * Forgets every scheduled grave; called once the server has stopped.
+     */
+    public static void clear() {
+        schedulers.clear();
+    }
+}
@@ -3,8 +3,12 @@ package me.mgin.graves.block.decay;
 import java.util.Optional;
 
 import me.mgin.graves.block.entity.GraveBlockEntity;
+import me.mgin.graves.config.GravesConfig;
+import it.unimi.dsi.fastutil.HashCommon;
 import net.minecraft.block.BlockState;
+import net.minecraft.server.world.ServerWorld;
 import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.random.Random;
 import net.minecraft.world.World;
 
 public class DecayStateManager {
@@ -23,11 +27,84 @@ public class DecayStateManager {
         return setDecayState(world, pos, potentialNewState, true);
     }
 
+    /**
+     * Brings the grave's decay up to date, advancing it a stage once it has spent maxStageTimeSeconds in the current
+     * one, and otherwise schedules the transition with the {@link DecayScheduler}. Graves don't count their time in
+     * stage every tick; it's evaluated whenever the grave is random ticked, used, loaded or due.
+     *
+     * @return whether the grave advanced a stage
+     */
+    static public boolean updateDecay(World world, BlockPos pos) {
+        if (world.isClient) return false;
+        if (!(world.getBlockEntity(pos) instanceof GraveBlockEntity entity)) return false;
+        if (!(world.getBlockState(pos).getBlock() instanceof DecayingGrave grave)) return false;
+
+        GravesConfig config = GravesConfig.getConfig();
+        boolean inFinalStage = grave.getDecayStage() == DecayingGrave.BlockDecay.FORGOTTEN;
+        boolean decaying = config.decay.decayEnabled && entity.getNoDecay() == 0 && !inFinalStage;
+
+        entity.updateDecayClock(decaying);
+
+        // If the maxStageTimeSeconds is 0 then maxStageTimeSeconds is effectively disabled.
+        int maxStageTimeSeconds = config.decay.maxStageTimeSeconds;
+        if (!decaying || maxStageTimeSeconds <= 0) {
+            if (world instanceof ServerWorld serverWorld) DecayScheduler.cancel(serverWorld, pos);
+            return false;
+        }
+
+        long stageTicks = maxStageTimeSeconds * 20L;
+        long ticksInStage = entity.getTicksInStage();
+        if (ticksInStage >= stageTicks) return catchUp(world, pos, entity, ticksInStage / stageTicks, stageTicks);
+
+        long remaining = stageTicks - ticksInStage;
+
+        // Come back exactly when the stage is over
+        if (world instanceof ServerWorld serverWorld) {
+            DecayScheduler.schedule(serverWorld, pos, world.getTime() + remaining);
+        }
+        return false;
+    }
+
+    /**
+     * Advances the grave through every stage it has completed since its decay was last evaluated, such as while its
+     * chunk was unloaded, decays its items once for each of them, and schedules the transition out of the stage it
+     * ends up in. The items are decayed with a random seeded by
+     * the grave's position and clock, so the same grave always catches up to the same result.
+     *
+     * @return whether the grave advanced a stage
+     */
+    static private boolean catchUp(World world, BlockPos pos, GraveBlockEntity entity, long elapsedStages,
+                                   long stageTicks) {
+        BlockState state = world.getBlockState(pos);
+        int stages = 0;
+
+        for (Optional<BlockState> next = DecayingGrave.getIncreasedDecayState(state);
+             next.isPresent() && stages < elapsedStages;
+             next = DecayingGrave.getIncreasedDecayState(state)) {
+            state = next.get();
+            stages++;
+        }
+
+        if (stages == 0) return false;
+
+        Random random = Random.create(HashCommon.mix(pos.asLong()) ^ entity.getDecayStart());
+
+        // Later stages start when the previous one should have ended, rather than when the grave was evaluated
+        entity.advanceDecayClock(stages * stageTicks);
+        Decayable.setDecayState(world, pos, state, stages, random);
+
+        // Replacing the block unscheduled the grave, so its next transition is scheduled again here
+        if (world instanceof ServerWorld serverWorld && DecayingGrave.getIncreasedDecayState(state).isPresent()) {
+            DecayScheduler.schedule(serverWorld, pos, world.getTime() + stageTicks - entity.getTicksInStage());
+        }
+        return true;
+    }
+
     static public boolean setDecayState(World world, BlockPos pos, Optional<BlockState> potentialNewState,
                                         boolean itemsDecay) {
         if (potentialNewState.isPresent()) {
             GraveBlockEntity entity = (GraveBlockEntity) world.getBlockEntity(pos);
-            entity.resetTimer("decay");
+            entity.resetDecayClock();
             Decayable.setDecayState(world, pos, potentialNewState.get(), itemsDecay);
             return true;
         }
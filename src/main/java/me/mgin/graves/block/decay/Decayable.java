@@ -1,5 +1,6 @@
 package me.mgin.graves.block.decay;
 
+import it.unimi.dsi.fastutil.HashCommon;
 import me.mgin.graves.Graves;
 import me.mgin.graves.api.InventoriesApi;
 import me.mgin.graves.block.GraveBlocks;
@@ -7,8 +8,6 @@ import me.mgin.graves.block.entity.GraveBlockEntity;
 import me.mgin.graves.config.GravesConfig;
 import net.minecraft.block.BlockState;
 import net.minecraft.block.entity.BlockEntity;
-import net.minecraft.enchantment.EnchantmentHelper;
-import net.minecraft.enchantment.Enchantments;
 import net.minecraft.item.ItemStack;
 import net.minecraft.server.world.ServerWorld;
 import net.minecraft.util.collection.DefaultedList;
@@ -61,59 +60,22 @@ public interface Decayable<T extends Enum<T>> {
         return max - (min + (max - min) * decayPercent);
     }
 
-    static DefaultedList<ItemStack> decayItems(DefaultedList<ItemStack> items) {
-        GravesConfig config = GravesConfig.getConfig();
-        float modifier = config.decay.decayModifier / 100f;
-        boolean decayBreaksItems = config.decay.decayBreaksItems;
-
-        // Do not decay items if the modifier is 0.
-        if (modifier == 0.00f) return items;
-
-        for (int i = 0; i < items.size(); i++) {
-            ItemStack item = items.get(i);
-            int maxDamage = item.getMaxDamage();
-            int damage = item.getDamage();
-            Random random = Random.create();
-
-            // Only decay items with a maxDamage.
-            if (maxDamage > 0) {
-                // Gets the decay percentage based on the item's remaining health.
-                float itemHealthPercent = 1 - ((float) damage / (float) maxDamage);
-                float decayPercent = calculateItemDecayPercent(itemHealthPercent, 0f, modifier);
-
-                // Adds randomness, ranging between -0.02f and 0.02f.
-                float randomness = (random.nextFloat() - 0.5f) * 0.04f;
-                if (decayPercent + randomness >= 0.0f) { // Prevents going into the negatives and healing the item.
-                    decayPercent += randomness;
-                }
-
-                // Unbreaking reduces the chance of an item decaying.
-                float unbreaking = (float) EnchantmentHelper.getLevel(Enchantments.UNBREAKING, item);
-                float unbreakingModifier = ((100f / (unbreaking + 1f)) / 100f);
-
-                // Attempt to decay the item.
-                float decayChance = 0.35f * unbreakingModifier;
-                if (decayChance >= random.nextFloat()) {
-                    int remainingDurability = maxDamage - damage;
-                    float decay = (float) remainingDurability * decayPercent;
-
-                    // Ensure the item hasn't broken, otherwise either remove the item (decayBreaksItems) or set it
-                    // to one health.
-                    if (remainingDurability - decay >= 1.0f) {
-                        item.setDamage((int) Math.ceil(damage + decay));
-                    } else if (decayBreaksItems) {
-                        items.set(i, ItemStack.EMPTY);
-                    } else {
-                        item.setDamage(maxDamage - 1);
-                    }
-                }
-            }
-        }
-
-        return items;
+    static void setDecayState(World world, BlockPos pos, BlockState state, boolean itemsDecay) {
+        // One random per grave, seeded so that the same grave decays the same way at the same time
+        Random random = Random.create(HashCommon.mix(pos.asLong()) ^ world.getTime());
+        setDecayState(world, pos, state, itemsDecay ? 1 : 0, random);
     }
 
-    static void setDecayState(World world, BlockPos pos, BlockState state, boolean itemsDecay) {
+    /**
+     * Sets the grave's decay state, decaying its items the given number of times.
+     *
+     * @param world World
+     * @param pos BlockPos
+     * @param state BlockState
+     * @param itemDecays int
+     * @param random Random
+     */
+    static void setDecayState(World world, BlockPos pos, BlockState state, int itemDecays, Random random) {
         BlockEntity blockEntity = world.getBlockEntity(pos);
 
         if (blockEntity instanceof GraveBlockEntity graveEntity) {
@@ -124,7 +86,7 @@ public interface Decayable<T extends Enum<T>> {
                 String id = api.getID();
                 DefaultedList<ItemStack> inventory = graveEntity.getInventory(id);
                 if (inventory == null)  continue;
-                graveEntity.setInventory(id, itemsDecay ? decayItems(inventory) : inventory);
+                graveEntity.setInventory(id, ItemDecay.decay(inventory, itemDecays, random));
             }
 
             world.addBlockEntity(graveEntity);
@@ -0,0 +1,112 @@
+package me.mgin.graves.block.decay;
+
+import me.mgin.graves.config.GravesConfig;
+import net.minecraft.enchantment.EnchantmentHelper;
+import net.minecraft.enchantment.Enchantments;
+import net.minecraft.item.ItemStack;
+import net.minecraft.util.collection.DefaultedList;
+import net.minecraft.util.math.random.Random;
+
+/**
+ * Decays the items of a grave's inventory in a single pass.
+ * <p>
+ * The decay curve of {@link Decayable#calculateItemDecayPercent} is sampled into a table whenever the configured
+ * decayModifier changes, so decaying an item is a table lookup rather than an exponential. A pass draws from the
+ * random it's given and doesn't allocate; items without durability are skipped before anything else is read.
+ */
+class ItemDecay {
+    private static final int CURVE_STEPS = 256;
+
+    private static float[] curve = new float[0];
+    private static int curveModifier = -1;
+
+    /**
+     * Decays every damageable item of the inventory the given number of times.
+     *
+     * @param items {@code DefaultedList<ItemStack>}
+     * @param passes int
+     * @param random Random
+     * @return {@code DefaultedList<ItemStack>}
+     */
+    static DefaultedList<ItemStack> decay(DefaultedList<ItemStack> items, int passes, Random random) {
+        GravesConfig config = GravesConfig.getConfig();
+        boolean decayBreaksItems = config.decay.decayBreaksItems;
+
+        // Do not decay items if the modifier is 0.
+        if (config.decay.decayModifier == 0 || passes <= 0) return items;
+
+        float[] curve = getCurve(config.decay.decayModifier);
+
+        for (int i = 0; i < items.size(); i++) {
+            ItemStack item = items.get(i);
+
+            // Only decay items with a maxDamage; it's a property of the item, so nothing is read from the stack.
+            int maxDamage = item.getItem().getMaxDamage();
+            if (maxDamage <= 0 || item.isEmpty()) continue;
+
+            // Unbreaking reduces the chance of an item decaying.
+            float unbreaking = item.hasEnchantments() ?
+                (float) EnchantmentHelper.getLevel(Enchantments.UNBREAKING, item) : 0f;
+            float decayChance = 0.35f * ((100f / (unbreaking + 1f)) / 100f);
+
+            for (int pass = 0; pass < passes; pass++) {
+                int damage = item.getDamage();
+
+                // Gets the decay percentage based on the item's remaining health.
+                float decayPercent = sample(curve, 1 - ((float) damage / (float) maxDamage));
+
+                // Adds randomness, ranging between -0.02f and 0.02f.
+                float randomness = (random.nextFloat() - 0.5f) * 0.04f;
+                if (decayPercent + randomness >= 0.0f) { // Prevents going into the negatives and healing the item.
+                    decayPercent += randomness;
+                }
+
+                // Attempt to decay the item.
+                if (decayChance < random.nextFloat()) continue;
+
+                int remainingDurability = maxDamage - damage;
+                float decay = (float) remainingDurability * decayPercent;
+
+                // Ensure the item hasn't broken, otherwise either remove the item (decayBreaksItems) or set it
+                // to one health.
+                if (remainingDurability - decay >= 1.0f) {
+                    item.setDamage((int) Math.ceil(damage + decay));
+                } else if (decayBreaksItems) {
+                    items.set(i, ItemStack.EMPTY);
+                    break;
+                } else {
+                    item.setDamage(maxDamage - 1);
+                }
+            }
+        }
+
+        return items;
+    }
+
+    /**
+     * Get the decay curve for the given decayModifier, sampled at evenly spaced health percentages.
+     */
+    private static float[] getCurve(int decayModifier) {
+        if (decayModifier == curveModifier) return curve;
+
+        float[] sampled = new float[CURVE_STEPS + 1];
+        for (int step = 0; step <= CURVE_STEPS; step++) {
+            sampled[step] = Decayable.calculateItemDecayPercent((float) step / CURVE_STEPS, 0f, decayModifier / 100f);
+        }
+
+        curve = sampled;
+        curveModifier = decayModifier;
+        return sampled;
+    }
+
+    /**
+     * Interpolates the curve at the given health percentage.
+     */
+    private static float sample(float[] curve, float healthPercent) {
+        float position = Math.max(0f, Math.min(healthPercent, 1f)) * CURVE_STEPS;
+        int step = Math.min((int) position, CURVE_STEPS - 1);
+        float fraction = position - step;
+
+        return curve[step] + (curve[step + 1] - curve[step]) * fraction;
+    }
+}
@@ -0,0 +1,146 @@
+package me.mgin.graves.block.decay;
+
+import it.unimi.dsi.fastutil.longs.Long2LongOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import it.unimi.dsi.fastutil.longs.LongConsumer;
+
+/**
+ * A hierarchical timing wheel of block positions, each due at a given world time.
+ * <p>
+ * The lowest level has a slot for each of the next 64 ticks, and every level above it covers 64 slots of the level
+ * below; positions further out than the highest level are kept in an overflow list. A position sits in the level
+ * whose block of time it shares with the wheel's current time, and moves down a level whenever the wheel enters its
+ * slot. Scheduling and firing a position are therefore constant time, and advancing the wheel only touches the slots
+ * that come due, however many positions are waiting.
+ * <p>
+ * Positions are cancelled lazily: their entries are left in the slots and skipped once they no longer match the
+ * position's deadline.
+ */
+class TimingWheel {
+    private static final int SLOT_BITS = 6;
+    private static final int SLOTS = 1 << SLOT_BITS;
+    private static final int LEVELS = 4;
+
+    private final LongArrayList[][] wheel = new LongArrayList[LEVELS][SLOTS];
+    private final LongArrayList overflow = new LongArrayList();
+    private final Long2LongOpenHashMap deadlines = new Long2LongOpenHashMap();
+    private long time;
+    private boolean filed = false;
+
+    /**
+     * @param time long the world time the wheel starts at
+     */
+    TimingWheel(long time) {
+        this.time = time;
+
+        for (LongArrayList[] level : wheel) {
+            for (int slot = 0; slot < SLOTS; slot++) level[slot] = new LongArrayList();
+        }
+    }
+
+    /**
+     * Schedules the position to fire at the given world time, replacing any earlier deadline it had; a deadline in
+     * the past fires on the next advance.
+     *
+     * @param pos long packed BlockPos
+     * @param deadline long
+     */
+    void schedule(long pos, long deadline) {
+        deadline = Math.max(deadline, time);
+        if (deadlines.containsKey(pos) && deadlines.get(pos) == deadline) return;
+
+        deadlines.put(pos, deadline);
+        insert(pos, deadline);
+    }
+
+    void cancel(long pos) {
+        deadlines.remove(pos);
+    }
+
+    /**
+     * Moves the wheel forward to the given world time, passing every position that came due on the way to the
+     * consumer in the order of their deadlines.
+     *
+     * @param now long
+     * @param consumer LongConsumer
+     */
+    void advance(long now, LongConsumer consumer) {
+        for (; time <= now; time++) {
+            if (deadlines.isEmpty()) {
+                // Nothing is waiting; drop the entries left behind and skip straight to the given time
+                if (filed) clear();
+                time = now + 1;
+                return;
+            }
+
+            cascade();
+
+            LongArrayList slot = wheel[0][(int) (time & (SLOTS - 1))];
+            if (slot.isEmpty()) continue;
+
+            long[] due = slot.toLongArray();
+            slot.clear();
+
+            for (long pos : due) {
+                // Entries left behind by a cancelled or rescheduled position no longer match its deadline
+                if (!deadlines.containsKey(pos) || deadlines.get(pos) != time) continue;
+
+                deadlines.remove(pos);
+                consumer.accept(pos);
+            }
+        }
+    }
+
+    /**
+     * Moves the positions of every slot the wheel has just entered down a level, starting from the highest.
+     */
+    private void cascade() {
+        if ((time & ((1L << (SLOT_BITS * LEVELS)) - 1)) == 0) reinsert(overflow);
+
+        for (int level = LEVELS - 1; level > 0; level--) {
+            int shift = SLOT_BITS * level;
+            if ((time & ((1L << shift) - 1)) != 0) continue;
+
+            reinsert(wheel[level][(int) ((time >> shift) & (SLOTS - 1))]);
+        }
+    }
+
+    private void reinsert(LongArrayList slot) {
+        if (slot.isEmpty()) return;
+
+        long[] positions = slot.toLongArray();
+        slot.clear();
+
+        for (long pos : positions) {
+            if (deadlines.containsKey(pos)) insert(pos, deadlines.get(pos));
+        }
+    }
+
+    /**
+     * Files the position in the lowest level whose block of time the deadline shares with the wheel's time; its slot
+     * is then always ahead of the wheel's position in that level.
+     */
+    private void insert(long pos, long deadline) {
+        filed = true;
+
+        for (int level = 0; level < LEVELS; level++) {
+            int shift = SLOT_BITS * level;
+
+            if ((deadline >> (shift + SLOT_BITS)) == (time >> (shift + SLOT_BITS))) {
+                wheel[level][(int) ((deadline >> shift) & (SLOTS - 1))].add(pos);
+                return;
+            }
+        }
+
+        overflow.add(pos);
+    }
+
+    private void clear() {
+        for (LongArrayList[] level : wheel) {
+            for (LongArrayList slot : level) slot.clear();
+        }
+
+        overflow.clear();
+        filed = false;
+    }
+}
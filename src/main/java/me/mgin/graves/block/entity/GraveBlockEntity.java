@@ -4,33 +4,46 @@ import com.mojang.authlib.GameProfile;
 import me.mgin.graves.Graves;
 import me.mgin.graves.api.InventoriesApi;
 import me.mgin.graves.block.GraveBlocks;
+import me.mgin.graves.util.GameProfileInterner;
 import me.mgin.graves.util.NbtHelper;
 import net.minecraft.block.BlockState;
 import net.minecraft.block.entity.BlockEntity;
 import net.minecraft.entity.player.PlayerEntity;
 import net.minecraft.item.ItemStack;
 import net.minecraft.nbt.NbtCompound;
+import net.minecraft.nbt.NbtElement;
 import net.minecraft.network.listener.ClientPlayPacketListener;
 import net.minecraft.network.packet.Packet;
 import net.minecraft.network.packet.s2c.play.BlockEntityUpdateS2CPacket;
 import net.minecraft.util.collection.DefaultedList;
 import net.minecraft.util.math.BlockPos;
+import net.minecraft.world.World;
 import org.jetbrains.annotations.Nullable;
 
 import java.util.HashMap;
 import java.util.Map;
 
 public class GraveBlockEntity extends BlockEntity {
+    private static final long UNSET = Long.MIN_VALUE;
+
     private GameProfile graveOwner;
     private BlockState state;
     private int xp;
     private int noDecay;
     private String customName;
     private NbtCompound graveSkull;
+    private GameProfile graveSkullProfile;
     private long mstime;
-    private final Map<String, Integer> timers = new HashMap<>();
+    private long decayStart = UNSET;
+    private long decayChecked = UNSET;
+    private int legacyDecaySeconds = 0;
     private final Map<String, DefaultedList<ItemStack>> inventories = new HashMap<>();
 
+    // Encoded sections of the grave's NBT, reused by every save and backup until the section changes. Inventories
+    // that were loaded are only decoded once they're first retrieved.
+    private final Map<String, NbtCompound> inventoriesNbt = new HashMap<>();
+    private NbtCompound graveOwnerNbt;
+
     public GraveBlockEntity(BlockPos pos, BlockState state) {
         super(GraveBlocks.GRAVE_BLOCK_ENTITY, pos, state);
         this.graveOwner = null;
@@ -50,16 +63,25 @@ public class GraveBlockEntity extends BlockEntity {
      */
     public void setInventory(String key, DefaultedList<ItemStack> items) {
         this.inventories.put(key, items);
+        this.inventoriesNbt.remove(key);
         this.markDirty();
     }
 
     /**
      * Retrieve an inventory from the inventories.
+     * <p>
+     * <strong>Note:</strong> The inventory can be changed in place, so it's encoded again on the next save.
      *
      * @param key String
      * @return {@code DefaultedList<ItemStack>}
      */
     public DefaultedList<ItemStack> getInventory(String key) {
+        NbtCompound encoded = this.inventoriesNbt.remove(key);
+
+        if (encoded != null && !this.inventories.containsKey(key)) {
+            this.inventories.put(key, NbtHelper.decodeInventory(encoded));
+        }
+
         return this.inventories.get(key);
     }
 
@@ -69,7 +91,8 @@ public class GraveBlockEntity extends BlockEntity {
      * @param profile GameProfile
      */
     public void setGraveOwner(GameProfile profile) {
-        this.graveOwner = profile;
+        this.graveOwner = GameProfileInterner.intern(profile);
+        this.graveOwnerNbt = null;
         this.markDirty();
     }
 
@@ -176,20 +199,82 @@ public class GraveBlockEntity extends BlockEntity {
         return mstime;
     }
 
-    public int getTimer(String key) {
-        return this.timers.getOrDefault(key, 0);
+    /**
+     * Get how long the grave has been in its current decay stage (in ticks); time spent not decaying is not
+     * counted.
+     *
+     * @return long
+     */
+    public long getTicksInStage() {
+        if (this.world == null || this.decayStart == UNSET) return 0;
+        return Math.max(this.world.getTime() - this.decayStart, 0);
+    }
+
+    /**
+     * Brings the decay clock up to date. The clock is a timestamp rather than a counter: it holds the world time
+     * the current stage was entered, which is moved forward by the time spent not decaying. Nothing needs to tick
+     * while the grave sits idle; the clock only has to be updated before its time in stage is read.
+     *
+     * @param decaying boolean whether the grave has been decaying since the last update
+     */
+    public void updateDecayClock(boolean decaying) {
+        if (this.world == null) return;
+        long now = this.world.getTime();
+
+        if (this.decayStart == UNSET) {
+            startDecayClock(now);
+        } else if (!decaying && this.decayChecked != UNSET && now > this.decayChecked) {
+            this.decayStart += now - this.decayChecked;
+            this.markDirty();
+        }
+
+        this.decayChecked = now;
     }
 
-    public void incrementTimer(String key, int amount) {
-        this.timers.put(key, getTimer(key) + amount);
+    /**
+     * Restarts the decay clock; used whenever the grave enters a new decay stage.
+     */
+    public void resetDecayClock() {
+        this.legacyDecaySeconds = 0;
+        this.decayStart = this.world != null ? this.world.getTime() : UNSET;
+        this.decayChecked = this.decayStart;
         this.markDirty();
     }
 
-    public void resetTimer(String key) {
-        this.timers.put(key, 0);
+    /**
+     * Moves the start of the current decay stage forward; used when the grave catches up on stages it has completed
+     * without being evaluated.
+     *
+     * @param ticks long
+     */
+    public void advanceDecayClock(long ticks) {
+        if (this.decayStart == UNSET) return;
+        this.decayStart += ticks;
         this.markDirty();
     }
 
+    /**
+     * Get the world time the grave's current decay stage started at, moved forward by the time spent not decaying.
+     *
+     * @return long
+     */
+    public long getDecayStart() {
+        return decayStart;
+    }
+
+    private void startDecayClock(long now) {
+        // Graves saved before the decay clock count their time in stage in seconds
+        this.decayStart = now - this.legacyDecaySeconds * 20L;
+        this.decayChecked = now;
+        this.legacyDecaySeconds = 0;
+    }
+
+    @Override
+    public void setWorld(World world) {
+        super.setWorld(world);
+        if (this.decayStart == UNSET) startDecayClock(world.getTime());
+    }
+
     /**
      * Set whether the grave should age or not.
      * <p>
@@ -198,6 +283,8 @@ public class GraveBlockEntity extends BlockEntity {
      * @param aging int
      */
     public void setNoDecay(int aging) {
+        // Time spent up to now counts only if the grave was decaying
+        this.updateDecayClock(this.noDecay == 0);
         this.noDecay = aging;
         this.markDirty();
     }
@@ -221,6 +308,7 @@ public class GraveBlockEntity extends BlockEntity {
      */
     public void setGraveSkull(NbtCompound graveSkull) {
         this.graveSkull = graveSkull;
+        this.graveSkullProfile = null;
         this.markDirty();
     }
 
@@ -236,6 +324,20 @@ public class GraveBlockEntity extends BlockEntity {
         return this.graveSkull;
     }
 
+    /**
+     * Get the profile of the custom head stored as the GraveSkull; it's decoded once and shared with every grave
+     * using the same head.
+     *
+     * @return GameProfile
+     */
+    public GameProfile getGraveSkullProfile() {
+        if (this.graveSkullProfile == null && this.hasGraveSkull()) {
+            this.graveSkullProfile = NbtHelper.toGameProfile(this.graveSkull);
+        }
+
+        return this.graveSkullProfile;
+    }
+
     /**
      * Determine whether the GraveBlockEntity has a GraveSkull entry.
      *
@@ -253,35 +355,26 @@ public class GraveBlockEntity extends BlockEntity {
         super.writeNbt(nbt);
 
         for (InventoriesApi api : Graves.inventories) {
-            String id = api.getID();
-            DefaultedList<ItemStack> inventory = this.getInventory(id);
-
-            if (inventory != null) {
-                nbt = NbtHelper.writeInventory(id, inventory, nbt);
-            }
+            writeInventory(api.getID(), nbt);
         }
 
         for (String modID : Graves.unloadedInventories) {
-            DefaultedList<ItemStack> inventory = this.getInventory(modID);
-
-            if (inventory != null) {
-                nbt = NbtHelper.writeInventory(modID, inventory, nbt);
-            }
+            writeInventory(modID, nbt);
         }
 
+        nbt.putInt("GraveDataVersion", NbtHelper.GRAVE_DATA_VERSION);
         nbt.putInt("XP", xp);
         nbt.putInt("noDecay", noDecay);
         nbt.putLong("mstime", mstime);
 
-        // Used for tracking time spent at each stage and expiration
-        NbtCompound timersNbt = new NbtCompound();
-        for (Map.Entry<String, Integer> entry : timers.entrySet()) {
-            timersNbt.putInt(entry.getKey(), entry.getValue());
+        // Used for tracking time spent in the current decay stage
+        if (decayStart != UNSET) {
+            nbt.putLong("decayStart", decayStart);
+            nbt.putLong("decayChecked", decayChecked);
         }
-        nbt.put("timers", timersNbt);
 
         if (graveOwner != null)
-            nbt.put("GraveOwner", NbtHelper.writeGameProfile(new NbtCompound(), graveOwner));
+            nbt.put("GraveOwner", getGraveOwnerNbt());
 
         if (customName != null && this.hasCustomName())
             nbt.putString("CustomName", customName);
@@ -290,48 +383,84 @@ public class GraveBlockEntity extends BlockEntity {
             nbt.put("GraveSkull", graveSkull);
     }
 
+    /**
+     * Writes the inventory's encoded form, encoding it only if it changed since it was last written.
+     */
+    private void writeInventory(String key, NbtCompound nbt) {
+        NbtCompound encoded = this.inventoriesNbt.get(key);
+
+        if (encoded == null) {
+            DefaultedList<ItemStack> inventory = this.inventories.get(key);
+            if (inventory == null) return;
+
+            encoded = NbtHelper.encodeInventory(inventory);
+            this.inventoriesNbt.put(key, encoded);
+        }
+
+        nbt.put(key, encoded);
+    }
+
+    private NbtCompound getGraveOwnerNbt() {
+        if (graveOwnerNbt == null) graveOwnerNbt = NbtHelper.writeGameProfile(new NbtCompound(), graveOwner);
+        return graveOwnerNbt;
+    }
+
     @Override
     public void readNbt(NbtCompound nbt) {
-        // Needed for backwards compatibility
-        nbt = NbtHelper.upgradeOldGraves(nbt);
+        // Needed for backwards compatibility; graves written in the current format skip the upgrade entirely
+        if (nbt.getInt("GraveDataVersion") < NbtHelper.GRAVE_DATA_VERSION) {
+            nbt = NbtHelper.upgradeOldGraves(nbt);
+
+            // Graves saved before the decay clock stored their time in stage as a timer
+            this.legacyDecaySeconds = nbt.getCompound("timers").getInt("decay");
+        } else {
+            this.legacyDecaySeconds = 0;
+        }
+
         super.readNbt(nbt);
 
-        // Store loaded inventories
+        // Store loaded inventories; they're decoded once retrieved
         for (InventoriesApi api : Graves.inventories) {
-            String id = api.getID();
-            if (nbt.contains(id)) {
-                this.setInventory(id, NbtHelper.readInventory(id, nbt));
-            }
+            readInventory(api.getID(), nbt);
         }
 
         // Store unloaded inventories
         for (String modID : Graves.unloadedInventories) {
-            if (nbt.contains(modID)) {
-                this.setInventory(modID, NbtHelper.readInventory(modID, nbt));
-            }
+            readInventory(modID, nbt);
         }
 
         this.xp = nbt.getInt("XP");
         this.noDecay = nbt.getInt("noDecay");
         this.mstime = nbt.getLong("mstime");
 
-        // Used for tracking time spent at each stage and expiration
-        timers.clear();
-        NbtCompound timersNbt = nbt.getCompound("timers");
-        for (String key : timersNbt.getKeys()) {
-            timers.put(key, timersNbt.getInt(key));
+        if (nbt.contains("decayStart")) {
+            this.decayStart = nbt.getLong("decayStart");
+            this.decayChecked = nbt.getLong("decayChecked");
+        } else {
+            this.decayStart = UNSET;
+            this.decayChecked = UNSET;
+            if (this.world != null) startDecayClock(this.world.getTime());
         }
 
-        if (nbt.contains("GraveOwner"))
+        if (nbt.contains("GraveOwner")) {
             this.graveOwner = NbtHelper.toGameProfile(nbt.getCompound("GraveOwner"));
+            this.graveOwnerNbt = nbt.getCompound("GraveOwner");
+        }
 
         if (nbt.contains("CustomName"))
             this.customName = nbt.getString("CustomName");
 
-        if (nbt.contains("GraveSkull"))
+        if (nbt.contains("GraveSkull")) {
             this.graveSkull = (NbtCompound) nbt.get("GraveSkull");
+            this.graveSkullProfile = null;
+        }
+    }
+
+    private void readInventory(String key, NbtCompound nbt) {
+        if (!nbt.contains(key, NbtElement.COMPOUND_TYPE)) return;
 
-        super.markDirty();
+        this.inventories.remove(key);
+        this.inventoriesNbt.put(key, nbt.getCompound(key));
     }
 
     /**
@@ -345,14 +474,40 @@ public class GraveBlockEntity extends BlockEntity {
         return tag;
     }
 
+    /**
+     * Retrieves the NBT data clients need to render and interact with the given GraveBlockEntity instance; its
+     * inventories, experience and decay clock are never sent to clients. The decay stage is part of the block state.
+     * The creation time is shown when the grave is attacked, and noDecay is checked client-side by the items used on
+     * graves.
+     *
+     * @return NbtCompound
+     */
+    public NbtCompound toClientNbt() {
+        NbtCompound tag = new NbtCompound();
+        tag.putInt("GraveDataVersion", NbtHelper.GRAVE_DATA_VERSION);
+        tag.putInt("noDecay", noDecay);
+        tag.putLong("mstime", mstime);
+
+        if (graveOwner != null)
+            tag.put("GraveOwner", getGraveOwnerNbt());
+
+        if (customName != null && this.hasCustomName())
+            tag.putString("CustomName", customName);
+
+        if (graveSkull != null)
+            tag.put("GraveSkull", graveSkull);
+
+        return tag;
+    }
+
     @Nullable
     @Override
     public Packet<ClientPlayPacketListener> toUpdatePacket() {
-        return BlockEntityUpdateS2CPacket.create(this, (BlockEntity b) -> this.toNbt());
+        return BlockEntityUpdateS2CPacket.create(this, (BlockEntity b) -> this.toClientNbt());
     }
 
     @Override
     public NbtCompound toInitialChunkDataNbt() {
-        return this.toNbt();
+        return this.toClientNbt();
     }
 }
@@ -4,6 +4,7 @@ import com.mojang.authlib.GameProfile;
 import me.mgin.graves.block.GraveBlockBase;
 import me.mgin.graves.block.entity.GraveBlockEntity;
 import me.mgin.graves.block.render.packs.GraveResourcePack;
+import me.mgin.graves.util.NbtHelper;
 import me.shedaniel.cloth.clothconfig.shadowed.blue.endless.jankson.annotation.Nullable;
 import net.minecraft.block.BlockState;
 import net.minecraft.block.SkullBlock;
@@ -17,7 +18,6 @@ import net.minecraft.client.render.entity.model.EntityModelLoader;
 import net.minecraft.client.render.entity.model.SkullEntityModel;
 import net.minecraft.client.util.math.MatrixStack;
 import net.minecraft.nbt.NbtCompound;
-import net.minecraft.nbt.NbtHelper;
 import net.minecraft.util.math.Direction;
 import net.minecraft.util.math.RotationAxis;
 
@@ -106,7 +106,7 @@ public class GraveSkullRenderer {
 
             // Handle custom heads (creates a custom profile)
             else {
-                profile = getCustomSkullProfile(graveSkull);
+                profile = graveEntity.getGraveSkullProfile();
                 skullData = skulls.get("player_head");
             }
         }
@@ -162,7 +162,7 @@ public class GraveSkullRenderer {
 
     /**
      * Leverages Minecraft's NbtHelper to create a profile with the appropriate
-     * texture, signature, and owner.
+     * texture, signature, and owner; the profile is interned.
      */
     public static GameProfile getCustomSkullProfile(NbtCompound graveSkull) {
         return NbtHelper.toGameProfile(graveSkull);
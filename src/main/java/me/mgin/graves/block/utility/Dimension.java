@@ -21,7 +21,14 @@ class Dimension {
      * Checks whether the given pos is within the dimensional boundaries.
      */
     public boolean inBounds(BlockPos pos) {
-        return this.maxY > pos.getY() && pos.getY() > this.minY;
+        return this.inBounds(pos.getY());
+    }
+
+    /**
+     * Checks whether the given Y level is within the dimensional boundaries.
+     */
+    public boolean inBounds(int y) {
+        return this.maxY > y && y > this.minY;
     }
 
     /**
@@ -0,0 +1,103 @@
+package me.mgin.graves.block.utility;
+
+import com.mojang.authlib.GameProfile;
+import me.mgin.graves.Graves;
+import me.mgin.graves.api.InventoriesApi;
+import me.mgin.graves.block.entity.GraveBlockEntity;
+import net.minecraft.block.BlockState;
+import net.minecraft.entity.player.PlayerEntity;
+import net.minecraft.item.ItemStack;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.util.collection.DefaultedList;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.Direction;
+
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Everything a grave is made of, taken from a player when they die and held until the grave is placed.
+ */
+class PendingGrave {
+    private final PlayerEntity player;
+    private final GameProfile profile;
+    private final Direction facing;
+    private final Map<String, DefaultedList<ItemStack>> inventories = new LinkedHashMap<>();
+    private final int xp;
+    private final long mstime;
+
+    private PendingGrave(PlayerEntity player) {
+        this.player = player;
+        this.profile = player.getGameProfile();
+        this.facing = player.getHorizontalFacing().getOpposite();
+        this.xp = Experience.calculatePlayerExperience(player);
+        this.mstime = (new Date()).getTime();
+    }
+
+    /**
+     * Takes the inventories and experience of the given player; they're left empty.
+     *
+     * @param player PlayerEntity
+     * @return PendingGrave
+     */
+    static PendingGrave capture(PlayerEntity player) {
+        PendingGrave grave = new PendingGrave(player);
+
+        // Store the player's inventories and clear them
+        for (InventoriesApi api : Graves.inventories) {
+            DefaultedList<ItemStack> inventory = api.getInventory(player);
+
+            if (inventory == null)
+                continue;
+
+            grave.inventories.put(api.getID(), inventory);
+            api.clearInventory(player);
+        }
+
+        // Reset the player's XP
+        player.totalExperience = 0;
+        player.experienceProgress = 0;
+        player.experienceLevel = 0;
+
+        return grave;
+    }
+
+    /**
+     * Get the player the grave belongs to; a player that respawned since dying is a new entity, so the current
+     * one is looked up first.
+     *
+     * @param server MinecraftServer or null
+     * @return PlayerEntity
+     */
+    PlayerEntity getPlayer(MinecraftServer server) {
+        PlayerEntity current = server != null ? server.getPlayerManager().getPlayer(profile.getId()) : null;
+        return current != null ? current : player;
+    }
+
+    GameProfile getProfile() {
+        return profile;
+    }
+
+    Direction getFacing() {
+        return facing;
+    }
+
+    /**
+     * Creates a grave entity holding the captured items and experience.
+     *
+     * @param pos BlockPos
+     * @param state BlockState
+     * @return GraveBlockEntity
+     */
+    GraveBlockEntity createEntity(BlockPos pos, BlockState state) {
+        GraveBlockEntity graveEntity = new GraveBlockEntity(pos, state);
+
+        inventories.forEach(graveEntity::setInventory);
+        graveEntity.setGraveOwner(profile);
+        graveEntity.setXp(xp);
+        graveEntity.setMstime(mstime);
+
+        return graveEntity;
+    }
+}
@@ -0,0 +1,297 @@
+package me.mgin.graves.block.utility;
+
+import me.mgin.graves.Graves;
+import me.mgin.graves.block.GraveBlocks;
+import me.mgin.graves.block.entity.GraveBlockEntity;
+import me.mgin.graves.config.GravesConfig;
+import me.mgin.graves.config.enums.UnloadedChunkPolicy;
+import me.mgin.graves.state.GraveRecord;
+import me.mgin.graves.state.ServerState;
+import me.mgin.graves.tags.BlockClassification;
+import net.minecraft.registry.RegistryKey;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.server.world.ChunkTicketType;
+import net.minecraft.server.world.ServerWorld;
+import net.minecraft.util.Util;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.ChunkPos;
+import net.minecraft.world.World;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Holds the graves of players who died during the tick until they're placed.
+ * <p>
+ * The first death of a tick is placed right away. Any further deaths during the tick are queued and placed together
+ * at the end of it: deaths in the same dimension that follow the same sink rules share a single
+ * {@link SpawnPosSearch}, so every column around them is read once and each grave is kept from taking the spot
+ * another grave of the batch was just given. This keeps mass deaths (such as {@code /kill @a} or a raid wipe) from
+ * searching the same region over and over.
+ * <p>
+ * When off-thread placement is enabled, a batch copies the chunks it covers and is searched on the worker pool
+ * instead; its graves are placed by the server thread once the search has finished. Graves still pending when the
+ * server stops are stored as grave backups.
+ * <p>
+ * Searches only read fully loaded chunks. Depending on {@link UnloadedChunkPolicy}, a death next to unloaded chunks
+ * is either placed without them, or waits (for a few seconds at most) for them to be loaded in the background. A
+ * death that waits is stored as a grave backup first, so its items survive a crash; the backup is deleted once the
+ * grave has been placed.
+ * <p>
+ * Only the server thread touches the buffers.
+ */
+public class PendingGraves {
+    // How long a death waits for the chunks around it to load
+    private static final int MAX_WAIT_TICKS = 100;
+    private static final ChunkTicketType<ChunkPos> PLACEMENT_TICKET = ChunkTicketType.create(
+        "forgottengraves_placement", Comparator.comparingLong(ChunkPos::toLong), MAX_WAIT_TICKS);
+
+    private static final List<Death> queued = new ArrayList<>();
+    private static final List<Entry> pending = new ArrayList<>();
+    private static int placedTick = -1;
+
+    private record Death(ServerWorld world, BlockPos origin, PendingGrave grave, int age, GraveRecord backup) {
+        Death older(GraveRecord backup) {
+            return new Death(world, origin, grave, age + 1, backup);
+        }
+    }
+
+    private record Batch(ServerWorld world, SpawnPosSearch.Rules rules) {}
+
+    private record Entry(RegistryKey<World> world, BlockPos origin, PendingGrave grave, GraveRecord backup,
+                         CompletableFuture<BlockPos> search) {}
+
+    /**
+     * Whether a death at the given position can be placed right away; false if a grave was already placed during
+     * the tick, or if the death has to wait for unloaded chunks. In either case the death should be queued.
+     */
+    static boolean placeNow(ServerWorld world, BlockPos origin) {
+        int tick = world.getServer().getTicks();
+        if (tick == placedTick) return false;
+
+        boolean waitForChunks = GravesConfig.getConfig().server.unloadedChunkPolicy == UnloadedChunkPolicy.LOAD;
+        if (waitForChunks && !PlacementView.isLoaded(world, origin, SpawnPosSearch.RANGE_XZ)) return false;
+
+        placedTick = tick;
+        return true;
+    }
+
+    /**
+     * Queues a death to be placed with the other deaths of this tick.
+     */
+    static void queue(ServerWorld world, BlockPos origin, PendingGrave grave) {
+        queued.add(new Death(world, origin, grave, 0, null));
+    }
+
+    /**
+     * Places the deaths queued during the tick, then every grave whose off-thread search has finished; called at the
+     * end of every server tick.
+     *
+     * @param server MinecraftServer
+     */
+    public static void placeReady(MinecraftServer server) {
+        GravesConfig config = GravesConfig.getConfig();
+        placeQueued(config.server.asyncGravePlacement, config.server.unloadedChunkPolicy == UnloadedChunkPolicy.LOAD);
+
+        if (pending.isEmpty()) return;
+
+        Iterator<Entry> iterator = pending.iterator();
+        while (iterator.hasNext()) {
+            Entry entry = iterator.next();
+            if (!entry.search().isDone()) continue;
+
+            iterator.remove();
+            place(server, entry);
+        }
+    }
+
+    /**
+     * Places the deaths that are still queued and stores every pending grave as a grave backup; called when the
+     * server begins stopping, before the final save.
+     *
+     * @param server MinecraftServer
+     */
+    public static void flush(MinecraftServer server) {
+        placeQueued(false, false);
+
+        if (pending.isEmpty()) return;
+
+        for (Entry entry : pending) {
+            ServerWorld world = server.getWorld(entry.world());
+
+            // Without grave backups there's nowhere to keep the items, so the grave is placed right away
+            if (world != null && GravesConfig.getConfig().server.storedGravesAmount == 0) {
+                place(server, entry);
+                continue;
+            }
+
+            entry.search().cancel(false);
+
+            // Deaths that waited for chunks were already backed up
+            if (entry.backup() == null) {
+                backUp(server, world != null ? world : server.getOverworld(), entry.origin(), entry.grave());
+            }
+
+            System.out.printf("[%s] Stored the pending grave of %s as a grave backup.\n", Graves.MOD_ID,
+                entry.grave().getProfile().getName());
+        }
+
+        pending.clear();
+    }
+
+    /**
+     * Groups the queued deaths into batches and places them, or submits them for an off-thread search. Deaths next
+     * to chunks that aren't loaded yet stay queued if they should wait for them.
+     */
+    private static void placeQueued(boolean async, boolean waitForChunks) {
+        if (queued.isEmpty()) return;
+
+        List<Death> waiting = new ArrayList<>();
+        Map<Batch, List<Death>> batches = new LinkedHashMap<>();
+
+        for (Death death : queued) {
+            if (waitForChunks && death.age() < MAX_WAIT_TICKS && !isLoaded(death)) {
+                GraveRecord backup = death.backup();
+                if (backup == null) {
+                    backup = backUp(death.world().getServer(), death.world(), death.origin(), death.grave());
+                }
+
+                // Without grave backups the items would only be kept in memory, so the grave is placed right away
+                if (backup != null) {
+                    waiting.add(death.older(backup));
+                    continue;
+                }
+            }
+
+            Batch batch = new Batch(death.world(), SpawnPosSearch.Rules.of(death.grave().getProfile()));
+            batches.computeIfAbsent(batch, key -> new ArrayList<>()).add(death);
+        }
+
+        queued.clear();
+        queued.addAll(waiting);
+
+        batches.forEach((batch, deaths) -> {
+            if (async) {
+                submit(batch, deaths);
+                return;
+            }
+
+            ServerWorld world = batch.world();
+            SpawnPosSearch search = new SpawnPosSearch(PlacementView.live(world), new Dimension(world), batch.rules());
+
+            for (Death death : deaths) {
+                BlockPos pos = search.find(death.origin());
+                search.claim(pos);
+                PlaceGrave.spawnGrave(world, pos, death.grave());
+                release(world.getServer(), death.grave(), death.backup());
+            }
+        });
+    }
+
+    /**
+     * Copies the chunks around every death of the batch and searches them on the worker pool; the positions are
+     * assigned in the order the players died.
+     */
+    private static void submit(Batch batch, List<Death> deaths) {
+        ServerWorld world = batch.world();
+        List<BlockPos> origins = deaths.stream().map(Death::origin).toList();
+        int maxY = origins.stream().mapToInt(BlockPos::getY).max().orElse(0) + SpawnPosSearch.RANGE_Y;
+
+        PlacementView snapshot = PlacementView.snapshot(world, origins, SpawnPosSearch.RANGE_XZ, maxY);
+        SpawnPosSearch search = new SpawnPosSearch(snapshot, new Dimension(world), batch.rules());
+
+        CompletableFuture<List<BlockPos>> positions = CompletableFuture.supplyAsync(() -> {
+            List<BlockPos> found = new ArrayList<>(origins.size());
+
+            for (BlockPos origin : origins) {
+                BlockPos pos = search.find(origin);
+                search.claim(pos);
+                found.add(pos);
+            }
+
+            return found;
+        }, Util.getMainWorkerExecutor());
+
+        for (int i = 0; i < deaths.size(); i++) {
+            int index = i;
+            Death death = deaths.get(i);
+            pending.add(new Entry(world.getRegistryKey(), death.origin(), death.grave(), death.backup(),
+                positions.thenApply(found -> found.get(index))));
+        }
+    }
+
+    /**
+     * Whether the chunks the death's search covers are loaded; the missing ones are requested on the first check.
+     */
+    private static boolean isLoaded(Death death) {
+        int range = SpawnPosSearch.RANGE_XZ;
+        if (PlacementView.isLoaded(death.world(), death.origin(), range)) return true;
+
+        if (death.age() == 0) {
+            BlockPos origin = death.origin();
+
+            for (int chunkX = (origin.getX() - range) >> 4; chunkX <= (origin.getX() + range) >> 4; chunkX++) {
+                for (int chunkZ = (origin.getZ() - range) >> 4; chunkZ <= (origin.getZ() + range) >> 4; chunkZ++) {
+                    ChunkPos pos = new ChunkPos(chunkX, chunkZ);
+                    death.world().getChunkManager().addTicket(PLACEMENT_TICKET, pos, 0, pos);
+                }
+            }
+        }
+
+        return false;
+    }
+
+    private static void place(MinecraftServer server, Entry entry) {
+        ServerWorld world = server.getWorld(entry.world());
+        if (world == null) world = server.getOverworld();
+
+        CompletableFuture<BlockPos> search = entry.search();
+        BlockPos pos = null;
+
+        if (search.isDone() && !search.isCompletedExceptionally()) {
+            pos = search.join();
+        } else if (search.isCompletedExceptionally()) {
+            System.err.printf("[%s] Unable to search for the grave position of %s off-thread.\n", Graves.MOD_ID,
+                entry.grave().getProfile().getName());
+        }
+
+        // The world may have changed since it was copied; search again if the position has been taken meanwhile
+        if (pos == null || !canStillPlace(world, pos)) {
+            Dimension dimension = new Dimension(world);
+            SpawnPosSearch.Rules rules = SpawnPosSearch.Rules.of(entry.grave().getProfile());
+            pos = new SpawnPosSearch(PlacementView.live(world), dimension, rules)
+                .find(dimension.enforceBoundaries(entry.origin()));
+        }
+
+        PlaceGrave.spawnGrave(world, pos, entry.grave());
+        release(server, entry.grave(), entry.backup());
+    }
+
+    /**
+     * Stores the pending grave as a grave backup at its origin.
+     *
+     * @return GraveRecord or null if grave backups are disabled
+     */
+    private static GraveRecord backUp(MinecraftServer server, ServerWorld world, BlockPos origin, PendingGrave grave) {
+        GraveBlockEntity graveEntity = grave.createEntity(origin, GraveBlocks.GRAVE.getDefaultState());
+        graveEntity.setWorld(world);
+        return ServerState.storePlayerGrave(grave.getPlayer(server), graveEntity);
+    }
+
+    /**
+     * Deletes the backup of a pending grave that has now been placed; the placed grave was backed up in its place.
+     */
+    private static void release(MinecraftServer server, PendingGrave grave, GraveRecord backup) {
+        if (backup != null) ServerState.deleteGrave(server, grave.getProfile().getId(), backup.getId());
+    }
+
+    private static boolean canStillPlace(World world, BlockPos pos) {
+        int flags = BlockClassification.get(world.getBlockState(pos));
+        return (flags & (BlockClassification.BLOCK_ENTITY | BlockClassification.DO_NOT_REPLACE)) == 0;
+    }
+}
@@ -0,0 +1,118 @@
+package me.mgin.graves.block.utility;
+
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import net.minecraft.block.BlockState;
+import net.minecraft.block.Blocks;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.ChunkPos;
+import net.minecraft.world.World;
+import net.minecraft.world.chunk.Chunk;
+import net.minecraft.world.chunk.ChunkSection;
+import net.minecraft.world.chunk.PalettedContainer;
+
+import java.util.Collection;
+
+/**
+ * The block states a grave position search reads, chunk by chunk.
+ */
+@FunctionalInterface
+interface PlacementView {
+    /**
+     * Get the block states of the given chunk.
+     *
+     * @param chunkX int
+     * @param chunkZ int
+     * @return ChunkView or null if the chunk can't be read
+     */
+    ChunkView getChunk(int chunkX, int chunkZ);
+
+    @FunctionalInterface
+    interface ChunkView {
+        /**
+         * Get the block state at the given position; the y level must be within the world's height.
+         */
+        BlockState getBlockState(int x, int y, int z);
+    }
+
+    /**
+     * Reads the world's chunk sections directly; may only be used on the server thread. Only chunks that are fully
+     * loaded can be read, so a search never loads or generates a chunk.
+     *
+     * @param world World
+     * @return PlacementView
+     */
+    static PlacementView live(World world) {
+        return (chunkX, chunkZ) -> {
+            Chunk chunk = world.getChunkManager().getWorldChunk(chunkX, chunkZ);
+            if (chunk == null) return null;
+
+            ChunkSection[] sections = chunk.getSectionArray();
+
+            return (x, y, z) -> sections[chunk.getSectionIndex(y)].getBlockState(x & 15, y & 15, z & 15);
+        };
+    }
+
+    /**
+     * Copies the block states of the fully loaded chunks within the given horizontal range of any of the origins,
+     * from the bottom of the world up to the given height. Every chunk is copied once, and the copy can be read from
+     * any thread.
+     *
+     * @param world World
+     * @param origins {@code Collection<BlockPos>}
+     * @param range int horizontal range around each origin
+     * @param maxY int highest y level that will be read
+     * @return PlacementView
+     */
+    static PlacementView snapshot(World world, Collection<BlockPos> origins, int range, int maxY) {
+        Long2ObjectMap<ChunkView> chunks = new Long2ObjectOpenHashMap<>();
+
+        for (BlockPos origin : origins) {
+            for (int chunkX = (origin.getX() - range) >> 4; chunkX <= (origin.getX() + range) >> 4; chunkX++) {
+                for (int chunkZ = (origin.getZ() - range) >> 4; chunkZ <= (origin.getZ() + range) >> 4; chunkZ++) {
+                    long key = ChunkPos.toLong(chunkX, chunkZ);
+                    if (chunks.containsKey(key)) continue;
+
+                    Chunk chunk = world.getChunkManager().getWorldChunk(chunkX, chunkZ);
+                    chunks.put(key, chunk != null ? copy(chunk, maxY) : null);
+                }
+            }
+        }
+
+        return (chunkX, chunkZ) -> chunks.get(ChunkPos.toLong(chunkX, chunkZ));
+    }
+
+    /**
+     * Whether every chunk within the given horizontal range of the origin is fully loaded.
+     *
+     * @param world World
+     * @param origin BlockPos
+     * @param range int
+     * @return boolean
+     */
+    static boolean isLoaded(World world, BlockPos origin, int range) {
+        for (int chunkX = (origin.getX() - range) >> 4; chunkX <= (origin.getX() + range) >> 4; chunkX++) {
+            for (int chunkZ = (origin.getZ() - range) >> 4; chunkZ <= (origin.getZ() + range) >> 4; chunkZ++) {
+                if (world.getChunkManager().getWorldChunk(chunkX, chunkZ) == null) return false;
+            }
+        }
+
+        return true;
+    }
+
+    private static ChunkView copy(Chunk chunk, int maxY) {
+        ChunkSection[] sections = chunk.getSectionArray();
+        int top = Math.min(chunk.getSectionIndex(Math.min(maxY, chunk.getTopY() - 1)), sections.length - 1);
+        int bottom = chunk.getBottomSectionCoord();
+
+        @SuppressWarnings("unchecked")
+        PalettedContainer<BlockState>[] copies = new PalettedContainer[top + 1];
+        for (int i = 0; i <= top; i++) copies[i] = sections[i].getBlockStateContainer().copy();
+
+        return (x, y, z) -> {
+            int index = (y >> 4) - bottom;
+            if (index >= copies.length) return Blocks.VOID_AIR.getDefaultState();
+            return copies[index].get(x & 15, y & 15, z & 15);
+        };
+    }
+}
@@ -10,7 +10,6 @@ import me.mgin.graves.config.GravesConfig;
 import me.mgin.graves.config.enums.GraveDropType;
 import me.mgin.graves.config.enums.GraveMergeOrder;
 import me.mgin.graves.inventory.Vanilla;
-import me.mgin.graves.state.PlayerState;
 import me.mgin.graves.state.ServerState;
 import net.minecraft.block.entity.BlockEntity;
 import net.minecraft.entity.player.PlayerEntity;
@@ -153,21 +152,7 @@ public class RetrieveGrave {
 
         // Mark as retrieved in global state
         GameProfile owner = graveEntity.getGraveOwner(); // Needed as the owner might not be the one retrieving
-        PlayerState playerState = ServerState.getPlayerState(player.getServer(), owner.getId());
-
-        for (int i = 0; i < playerState.graves.size(); i++) {
-            NbtCompound grave = (NbtCompound) playerState.graves.get(i);
-
-            assert player.getServer() != null;
-            if (grave.getLong("mstime") == graveEntity.getMstime()) {
-                // Set retrieved as true
-                grave.putBoolean("retrieved", true);
-                playerState.graves.set(i, grave);
-
-                // Mark server state dirty
-                ServerState.getServerState(player.getServer()).markDirty();
-            }
-        }
+        ServerState.markGraveRetrieved(player.getServer(), owner.getId(), graveEntity.getMstime(), pos);
 
         return true;
     }
@@ -0,0 +1,325 @@
+package me.mgin.graves.block.utility;
+
+import com.mojang.authlib.GameProfile;
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import me.mgin.graves.config.GravesConfig;
+import me.mgin.graves.tags.BlockClassification;
+import net.minecraft.block.BlockState;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.ChunkPos;
+
+import java.util.Arrays;
+
+/**
+ * Finds where a grave should be placed by scanning the block columns around the death position.
+ * <p>
+ * Block states are read straight from the chunk section palettes, and every column remembers what it has already
+ * read: how each block was classified and the position a grave placed at a given height would sink down to. Each
+ * column is therefore read at most once no matter how many candidate positions it holds, and a column is only
+ * scanned as far as it could still beat the best candidate found so far.
+ * <p>
+ * Candidates are ranked in the same order as {@link BlockPos#iterateOutwards}: by manhattan distance, then by x, y
+ * and z offset; so the chosen position is the first one an outward walk of the same volume would have accepted.
+ * <p>
+ * One search can place several graves: columns are kept by their world position, and every position handed out
+ * is {@link #claim claimed} so that later graves in the same search neither take it nor sink through it.
+ */
+class SpawnPosSearch {
+    static final int RANGE_XZ = 8;
+    static final int RANGE_Y = 80;
+
+    // Per block classification flags; 0 means the block has not been read yet
+    private static final byte READ = 1;
+    private static final byte PLACEABLE = 1 << 1;
+    private static final byte OPTIMAL = 1 << 2;
+    private static final byte SINKABLE = 1 << 3;
+
+    private static final int UNKNOWN = Integer.MIN_VALUE;
+
+    private final PlacementView view;
+    private final Dimension dimension;
+    private final Rules rules;
+    private final Long2ObjectMap<Column> columns = new Long2ObjectOpenHashMap<>();
+
+    private int originX;
+    private int originY;
+    private int originZ;
+
+    /**
+     * The config a search follows; graves whose rules are equal can share a search.
+     *
+     * @param sinkThroughBlocks boolean
+     * @param replaceBlocks boolean
+     * @param sinkInMask int the {@link BlockClassification} flags of the blocks a grave sinks through
+     */
+    record Rules(boolean sinkThroughBlocks, boolean replaceBlocks, int sinkInMask) {
+        static Rules of(GameProfile profile) {
+            GravesConfig config = GravesConfig.getConfig();
+
+            // The blocks a grave sinks through when they're below it
+            boolean sinkInAir = GravesConfig.resolve("sinkInAir", profile);
+            boolean sinkInWater = GravesConfig.resolve("sinkInWater", profile);
+            boolean sinkInLava = GravesConfig.resolve("sinkInLava", profile);
+            int sinkInMask = (sinkInAir ? BlockClassification.AIR_BLOCK : 0) |
+                (sinkInWater ? BlockClassification.WATER_BLOCK : 0) |
+                (sinkInLava ? BlockClassification.LAVA_BLOCK : 0);
+
+            return new Rules(config.sink.sinkThroughBlocks, config.sink.replaceBlocks, sinkInMask);
+        }
+    }
+
+    /**
+     * The search only reads the given view, so when the view is a snapshot it may run on any thread.
+     *
+     * @param view PlacementView
+     * @param dimension Dimension
+     * @param rules Rules
+     */
+    SpawnPosSearch(PlacementView view, Dimension dimension, Rules rules) {
+        this.view = view;
+        this.dimension = dimension;
+        this.rules = rules;
+    }
+
+    /**
+     * Sinks the given position if necessary, and looks for a more suitable position if the grave can't be placed
+     * there or would replace a block.
+     *
+     * @param pos BlockPos within the dimension's boundaries
+     * @return BlockPos
+     */
+    BlockPos find(BlockPos pos) {
+        this.originX = pos.getX();
+        this.originZ = pos.getZ();
+        this.originY = pos.getY();
+
+        // Sink functionality
+        Column origin = getColumn(originX, originZ);
+        int y = origin.sink(pos.getY());
+
+        if (origin.canPlace(y) && origin.is(y, OPTIMAL)) {
+            return new BlockPos(originX, y, originZ);
+        }
+
+        // The outward search is centered on the sunk position
+        this.originY = y;
+        return findOptimal(!origin.canPlace(y));
+    }
+
+    /**
+     * Marks the given position as taken by a grave.
+     *
+     * @param pos BlockPos
+     */
+    void claim(BlockPos pos) {
+        getColumn(pos.getX(), pos.getZ()).occupy(pos.getY());
+    }
+
+    /**
+     * Finds the closest position that, once sunk, is liquid, air or replaceable. Failing that, the closest position
+     * that can be placed is used if the origin itself can't be placed; otherwise the grave stays at the origin.
+     */
+    private BlockPos findOptimal(boolean allowSuboptimal) {
+        Candidate optimal = new Candidate();
+        Candidate suboptimal = new Candidate();
+
+        for (int dx = -RANGE_XZ; dx <= RANGE_XZ; dx++) {
+            for (int dz = -RANGE_XZ; dz <= RANGE_XZ; dz++) {
+                int horizontal = Math.abs(dx) + Math.abs(dz);
+
+                // Nothing in this column can be closer than what was already found
+                boolean needOptimal = horizontal <= optimal.distance;
+                boolean needSuboptimal = allowSuboptimal && optimal.isEmpty() && horizontal <= suboptimal.distance;
+                if (!needOptimal && !needSuboptimal) continue;
+
+                Column column = getColumn(originX + dx, originZ + dz);
+                scanColumn(column, dx, dz, horizontal, optimal, allowSuboptimal ? suboptimal : null);
+            }
+        }
+
+        if (!optimal.isEmpty()) return optimal.toBlockPos(originX, originZ);
+        if (!suboptimal.isEmpty()) return suboptimal.toBlockPos(originX, originZ);
+        return new BlockPos(originX, originY, originZ);
+    }
+
+    /**
+     * Walks a column outwards from the origin's height, offering the closest optimal and suboptimal positions it
+     * holds to the given candidates.
+     */
+    private void scanColumn(Column column, int dx, int dz, int horizontal, Candidate optimal, Candidate suboptimal) {
+        boolean optimalFound = false;
+        boolean suboptimalFound = suboptimal == null;
+
+        for (int offset = 0; offset <= RANGE_Y; offset++) {
+            int distance = horizontal + offset;
+            if (distance > optimal.distance && (suboptimalFound || distance > suboptimal.distance)) return;
+
+            // Lower positions come first at equal distance, as with BlockPos.iterateOutwards
+            for (int dy = -offset; dy <= offset; dy += Math.max(offset * 2, 1)) {
+                int y = originY + dy;
+                if (!column.canPlace(y)) continue;
+
+                int sunk = column.sink(y);
+
+                if (!optimalFound && column.is(sunk, OPTIMAL)) {
+                    optimal.offer(distance, dx, dy, dz, sunk);
+                    optimalFound = true;
+                }
+
+                if (!suboptimalFound && column.canPlace(sunk)) {
+                    suboptimal.offer(distance, dx, dy, dz, sunk);
+                    suboptimalFound = true;
+                }
+            }
+
+            if (optimalFound && suboptimalFound) return;
+        }
+    }
+
+    private Column getColumn(int x, int z) {
+        long key = ChunkPos.toLong(x, z);
+        Column column = columns.get(key);
+
+        if (column == null) {
+            column = new Column(x, z);
+            columns.put(key, column);
+        }
+
+        return column;
+    }
+
+    /**
+     * Combines the block state's classification with the rules of the search.
+     */
+    private byte classify(BlockState state) {
+        int classification = BlockClassification.get(state);
+        byte flags = READ;
+
+        boolean doNotReplace = (classification & BlockClassification.DO_NOT_REPLACE) != 0;
+        boolean replaceable = (classification & BlockClassification.REPLACEABLE) != 0;
+        boolean optimal = (classification & (BlockClassification.AIR | BlockClassification.LIQUID)) != 0 ||
+            rules.replaceBlocks() && !doNotReplace && replaceable;
+
+        // Existing block entities and irreplaceable blocks are never replaced
+        if ((classification & (BlockClassification.BLOCK_ENTITY | BlockClassification.DO_NOT_REPLACE)) == 0) {
+            flags |= PLACEABLE;
+        }
+
+        if (optimal) flags |= OPTIMAL;
+
+        // Whether a grave sits on top of this block or sinks through it
+        boolean sinkThrough = rules.sinkThroughBlocks() && (classification & BlockClassification.SINK_THROUGH) != 0;
+        boolean sinkIn = optimal && (classification & rules.sinkInMask()) != 0;
+        if (sinkThrough || sinkIn) flags |= SINKABLE;
+
+        return flags;
+    }
+
+    /**
+     * A single block column of the searched volume, read lazily and only once. Nothing can be placed in a column
+     * whose chunk can't be read.
+     */
+    private class Column {
+        private final int x;
+        private final int z;
+        private final PlacementView.ChunkView chunk;
+        private final byte[] flags;
+        private final int[] sunk;
+
+        Column(int x, int z) {
+            int height = dimension.getMaxY() - dimension.getMinY();
+
+            this.x = x;
+            this.z = z;
+            this.chunk = view.getChunk(x >> 4, z >> 4);
+            this.flags = new byte[height];
+            this.sunk = new int[height];
+            Arrays.fill(this.sunk, UNKNOWN);
+        }
+
+        /**
+         * Whether the grave can be placed at the given height; it must be within the dimension's boundaries.
+         */
+        boolean canPlace(int y) {
+            return dimension.inBounds(y) && is(y, PLACEABLE);
+        }
+
+        boolean is(int y, byte flag) {
+            if (y < dimension.getMinY() || y >= dimension.getMaxY()) {
+                // Outside the world; the same as the void air returned by World#getBlockState
+                return flag != PLACEABLE && flag != SINKABLE;
+            }
+
+            int index = y - dimension.getMinY();
+            if (flags[index] == 0) flags[index] = chunk != null ? classify(chunk.getBlockState(x, y, z)) : READ;
+            return (flags[index] & flag) != 0;
+        }
+
+        /**
+         * The height a grave placed at the given height ends up at; it sinks as long as the block below is
+         * sinkable, but never below the dimension's minimum height plus one.
+         */
+        int sink(int y) {
+            int depth = dimension.getMinY() + 1;
+            if (y <= depth || y >= dimension.getMaxY()) return y;
+
+            // Walk down until a known result, a block that stops sinking, or the lowest depth is reached
+            int i = y;
+            while (i > depth && sunk[i - dimension.getMinY()] == UNKNOWN && is(i - 1, SINKABLE)) i--;
+
+            int known = sunk[i - dimension.getMinY()];
+            int result = known != UNKNOWN ? known : i;
+
+            for (int j = i; j <= y; j++) sunk[j - dimension.getMinY()] = result;
+            return result;
+        }
+
+        /**
+         * Treats the given height as a grave: it can't be placed, replaced or sunk through.
+         */
+        void occupy(int y) {
+            if (y < dimension.getMinY() || y >= dimension.getMaxY()) return;
+
+            flags[y - dimension.getMinY()] = READ;
+            Arrays.fill(sunk, UNKNOWN);
+        }
+    }
+
+    /**
+     * The best position offered so far, ranked as {@link BlockPos#iterateOutwards} would visit it.
+     */
+    private static class Candidate {
+        private int distance = Integer.MAX_VALUE;
+        private int dx;
+        private int dy;
+        private int dz;
+        private int y;
+
+        boolean isEmpty() {
+            return distance == Integer.MAX_VALUE;
+        }
+
+        void offer(int distance, int dx, int dy, int dz, int y) {
+            if (!isEmpty() && compare(distance, dx, dy, dz) >= 0) return;
+
+            this.distance = distance;
+            this.dx = dx;
+            this.dy = dy;
+            this.dz = dz;
+            this.y = y;
+        }
+
+        BlockPos toBlockPos(int originX, int originZ) {
+            return new BlockPos(originX + dx, y, originZ + dz);
+        }
+
+        private int compare(int distance, int dx, int dy, int dz) {
+            if (distance != this.distance) return Integer.compare(distance, this.distance);
+            if (dx != this.dx) return Integer.compare(dx, this.dx);
+            if (dy != this.dy) return Integer.compare(dy, this.dy);
+            // Positive z offsets are visited before their negative mirror
+            return Integer.compare(dz < 0 ? 1 : 0, this.dz < 0 ? 1 : 0);
+        }
+    }
+}
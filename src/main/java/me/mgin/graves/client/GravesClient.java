@@ -11,6 +11,7 @@ import net.fabricmc.fabric.api.client.rendering.v1.BlockEntityRendererRegistry;
 
 public class GravesClient implements ClientModInitializer {
     public static GravesConfig SERVER_CONFIG = null;
+    public static int SERVER_CONFIG_VERSION = 0;
 
     @Override
     public void onInitializeClient() {
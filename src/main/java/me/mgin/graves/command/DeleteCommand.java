@@ -7,11 +7,10 @@ import com.mojang.brigadier.exceptions.CommandSyntaxException;
 import me.mgin.graves.block.GraveBlockBase;
 import me.mgin.graves.block.entity.GraveBlockEntity;
 import me.mgin.graves.config.GravesConfig;
+import me.mgin.graves.state.GraveRecord;
 import me.mgin.graves.state.PlayerState;
 import me.mgin.graves.state.ServerState;
-import me.mgin.graves.util.NbtHelper;
 import me.mgin.graves.util.Responder;
-import net.minecraft.nbt.NbtCompound;
 import net.minecraft.server.MinecraftServer;
 import net.minecraft.server.command.ServerCommandSource;
 import net.minecraft.server.world.ServerWorld;
@@ -43,25 +42,22 @@ public class DeleteCommand {
         PlayerState playerState = ServerState.getPlayerState(server, player.getId());
 
         // Ensure grave exists
-        if (playerState.graves.size() >= graveId) {
-            NbtCompound grave = playerState.graves.getCompound(graveId - 1);
+        GraveRecord grave = playerState.getGrave(graveId);
+        int position = grave != null ? playerState.indexOf(grave) + 1 : graveId;
 
-            // Removing 1 since IDs are one-based indexed for interface.
-            playerState.graves.remove(graveId - 1);
-
-            // Mark server state dirty
-            ServerState.getServerState(server).markDirty();
+        if (grave != null) {
+            ServerState.deleteGrave(server, player.getId(), graveId);
             res.sendInfo(Text.translatable("command.delete.deleted-grave", graveId, player.getName()), null);
 
             // Run if the grave has not been retrieved
-            if (!grave.getBoolean("retrieved")) {
+            if (!grave.isRetrieved()) {
                 GravesConfig config = GravesConfig.getConfig();
                 boolean destructive = config.server.destructiveDeleteCommand;
 
                 // Removes the grave from the world (if set to true)
                 if (destructive) {
-                    BlockPos gravePos = NbtHelper.readCoordinates(grave);
-                    String storedDimension = grave.getString("dimension");
+                    BlockPos gravePos = grave.getPos();
+                    String storedDimension = grave.getDimension();
 
                     // Search for the world the grave is located
                     for (ServerWorld world : server.getWorlds()) {
@@ -72,7 +68,7 @@ public class DeleteCommand {
                         // Check if block is a grave block
                         if (world.getBlockEntity(gravePos) instanceof GraveBlockEntity graveEntity) {
                             // Verify grave is identical to the stored grave
-                            if (graveEntity.getMstime() == grave.getLong("mstime")) {
+                            if (graveEntity.getMstime() == grave.getMstime()) {
                                 // This needs to be set in order to actually remove the grave from the world
                                 GraveBlockBase graveBlock = (GraveBlockBase) world.getBlockState(gravePos).getBlock();
                                 graveBlock.setBrokenByPlayer(true);
@@ -94,10 +90,10 @@ public class DeleteCommand {
             int page;
 
             // Resolve the page number
-            if (graveId % 5 == 0) {
-                page = graveId / 5;
+            if (position % 5 == 0) {
+                page = position / 5;
             } else {
-                page = (int) (Math.floor((double) graveId / 5) + 1);
+                page = (int) (Math.floor((double) position / 5) + 1);
             }
 
             // Run the List Command
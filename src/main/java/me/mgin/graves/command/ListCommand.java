@@ -7,24 +7,23 @@ import com.mojang.brigadier.exceptions.CommandSyntaxException;
 import me.mgin.graves.versioned.VersionedCode;
 import me.mgin.graves.command.utility.Interact;
 import me.mgin.graves.config.GravesConfig;
+import me.mgin.graves.state.GraveRecord;
 import me.mgin.graves.state.PlayerState;
 import me.mgin.graves.state.ServerState;
 import me.mgin.graves.util.Responder;
-import net.minecraft.nbt.NbtCompound;
 import net.minecraft.server.MinecraftServer;
 import net.minecraft.server.command.ServerCommandSource;
 import net.minecraft.server.network.ServerPlayerEntity;
 import net.minecraft.text.Text;
 import net.minecraft.util.math.BlockPos;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Objects;
 
 import static me.mgin.graves.command.utility.ArgumentUtility.getIntegerArgument;
 import static me.mgin.graves.command.utility.ArgumentUtility.getProfileArgument;
 import static me.mgin.graves.util.DateFormatter.formatDate;
-import static me.mgin.graves.util.NbtHelper.readCoordinates;
 
 public class ListCommand {
     static public int execute(CommandContext<ServerCommandSource> context) throws CommandSyntaxException {
@@ -87,16 +86,14 @@ public class ListCommand {
         int startOfPage = endOfPage - 5;
 
         // Determine what graves to show the player
-        Map<Integer, NbtCompound> graves = new HashMap<>();
-        for (int i = 0; i < playerState.graves.size(); i++) {
-            NbtCompound grave = playerState.graves.getCompound(i);
-
+        List<GraveRecord> graves = new ArrayList<>();
+        for (GraveRecord grave : playerState.getGraves()) {
             // Do not show non-OP players their recovered graves.
             if (issuer != null && !issuer.hasPermissionLevel(4)) {
-                if (grave.getBoolean("retrieved")) continue;
+                if (grave.isRetrieved()) continue;
             }
 
-            graves.put(i, grave);
+            graves.add(grave);
         }
 
         // Ensure that the page has graves on it before displaying
@@ -120,10 +117,10 @@ public class ListCommand {
      * @param page        int
      * @param startOfPage int
      * @param endOfPage   int
-     * @param graves {@code Map<Integer, NbtCompound>}
+     * @param graves {@code List<GraveRecord>}
      */
     private static void sendGraveList(Responder res, GameProfile target, ServerPlayerEntity issuer, GameProfile recipient, int page,
-                                      int startOfPage, int endOfPage, Map<Integer, NbtCompound> graves) {
+                                      int startOfPage, int endOfPage, List<GraveRecord> graves) {
         int amountOfPages = (int) Math.ceil((double) graves.size() / 5);
 
         // Seperator (no prefix)
@@ -136,9 +133,9 @@ public class ListCommand {
         if (issuer != null) res.send(Text.literal(" "), null);
 
         // List graves for given the page
-        int index = 0; // Needed to keep track of where program is inside the graves map (for pagination purposes).
+        int index = 0; // Needed to keep track of where program is inside the graves list (for pagination purposes).
 
-        for (Map.Entry<Integer, NbtCompound> entry : graves.entrySet()) {
+        for (GraveRecord grave : graves) {
             // The index has to be incremented before the start of page check otherwise it'd never increment.
             // It could occur after the end of page check, but I figured keeping pagination together was better
             // visually.
@@ -148,13 +145,9 @@ public class ListCommand {
             if (index - 1 == endOfPage) break;
             if (startOfPage > index - 1) continue;
 
-            // Get the key (grave id) and grave NBT
-            int i = entry.getKey();
-            NbtCompound grave = entry.getValue();
-
             // Send the list entry to the issuer
             Text itemMessage = Text.literal("") // Helps prevent passing styles to other Text objects
-                .append(genListCommandEntry(res, grave, issuer, recipient, target.getName(), i));
+                .append(genListCommandEntry(res, grave, issuer, recipient, target.getName(), grave.getId()));
 
             res.sendInfo(itemMessage, null);
         }
@@ -177,16 +170,16 @@ public class ListCommand {
         if (issuer != null) res.send(Text.literal(""), null);
     }
 
-    private static Text genListCommandEntry(Responder res, NbtCompound grave, ServerPlayerEntity issuer,
+    private static Text genListCommandEntry(Responder res, GraveRecord grave, ServerPlayerEntity issuer,
                                             GameProfile recipient,
-                                            String target, int i) {
+                                            String target, int id) {
         // Get information on the grave
-        String created = formatDate(grave.getLong("mstime"));
-        String dimension = grave.getString("dimension");
-        boolean retrieved = grave.getBoolean("retrieved");
+        String created = formatDate(grave.getMstime());
+        String dimension = grave.getDimension();
+        boolean retrieved = grave.isRetrieved();
 
         // Get the block position from the grave
-        BlockPos pos = readCoordinates(grave);
+        BlockPos pos = grave.getPos();
 
         // Color the coordinates based on dimension if not retrieved, otherwise dim
         Text xText = retrieved ? res.dim(pos.getX()) : res.dimension(pos.getX(), dimension);
@@ -197,7 +190,7 @@ public class ListCommand {
         Text hoverContent = res.info(Text.translatable(
             "command.list.entry.tooltip",
             res.highlight(dimension),
-            res.highlight(i + 1),
+            res.highlight(id),
             res.highlight(created),
             res.highlight(retrieved ? "Yes" : "No")
         ));
@@ -208,7 +201,7 @@ public class ListCommand {
         // Issuer is null when being issued by a non-player (server)
         if (issuer == null) {
             message = Text.literal("")
-                .append(res.info(String.format("%d. ", i)))
+                .append(res.info(String.format("%d. ", id)))
                 .append(Text.translatable("grave.coordinates", xText, yText, zText))
                 .append(retrieved ? Text.literal(" (✓)") : Text.literal(""));
         } else {
@@ -239,16 +232,16 @@ public class ListCommand {
                 .append(Text.literal(" "))
                 .append(Interact.generateButton(res,
                     res.success(Text.translatable("command.list.entry.restore-button")),
-                    res.hint(Text.translatable("command.list.entry.restore-button.tooltip", i + 1, rec)),
-                    String.format("/graves restore %s %d %s true", target, i + 1, rec)
+                    res.hint(Text.translatable("command.list.entry.restore-button.tooltip", id, rec)),
+                    String.format("/graves restore %s %d %s true", target, id, rec)
                 ));
 
             message = message.copy()
                 .append(Text.literal(" "))
                 .append(Interact.generateButton(res,
                     res.error(Text.translatable("command.list.entry.delete-button")),
-                    res.hint(Text.translatable("command.list.entry.delete-button.tooltip", i + 1)),
-                    String.format("/graves delete %s %d true %s", target, i + 1, rec)
+                    res.hint(Text.translatable("command.list.entry.delete-button.tooltip", id)),
+                    String.format("/graves delete %s %d true %s", target, id, rec)
                 ));
         }
 
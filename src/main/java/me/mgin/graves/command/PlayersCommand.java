@@ -26,7 +26,6 @@ public class PlayersCommand {
         ServerCommandSource source = context.getSource();
         MinecraftServer server = source.getServer();
         Responder res = new Responder(source.getPlayer(), server);
-        ServerState serverState = ServerState.getServerState(server);
 
         // Ensure source has permission
         if (!source.hasPermissionLevel(4)) {
@@ -39,11 +38,11 @@ public class PlayersCommand {
             .append(res.info(Text.translatable("command.players.beginning"))));
 
         // Iterate over players
-        for (Map.Entry<UUID, PlayerState> entry : serverState.players.entrySet()) {
+        for (Map.Entry<UUID, PlayerState> entry : ServerState.getAllPlayerStates(server).entrySet()) {
             UUID id = entry.getKey();
             PlayerState playerState = entry.getValue();
 
-            if (playerState.graves.size() == 0) continue;
+            if (playerState.getGraveCount() == 0) continue;
 
             // Check if the profile exists and if it does, add to message
             Optional<GameProfile> potentialProfile = server.getUserCache().getByUuid(id);
@@ -51,7 +50,7 @@ public class PlayersCommand {
                 message.set(message.get().copy().append(
                     Text.translatable("command.players.information",
                         res.highlight(profile.getName()),
-                        playerState.graves.size()
+                        playerState.getGraveCount()
                     )
                 ));
             });
@@ -7,6 +7,7 @@ import com.mojang.brigadier.exceptions.CommandSyntaxException;
 import me.mgin.graves.Graves;
 import me.mgin.graves.versioned.VersionedCode;
 import me.mgin.graves.block.utility.RetrieveGrave;
+import me.mgin.graves.state.GraveRecord;
 import me.mgin.graves.state.PlayerState;
 import me.mgin.graves.state.ServerState;
 import me.mgin.graves.util.NbtHelper;
@@ -32,7 +33,7 @@ public class RestoreCommand {
         // Get command arguments
         // graves restore <graveid> <player> <recipient>
         GameProfile player = getProfileArgument(context, "player", 3);
-        int graveId = context.getArgument("graveid", Integer.class); // Remove one for zero-indexing
+        int graveId = context.getArgument("graveid", Integer.class);
         GameProfile recipient = getProfileArgument(context, "recipient", 5);
         boolean showList = getBooleanArgument(context, "showlist", 6);
 
@@ -46,14 +47,24 @@ public class RestoreCommand {
         String name = player.getName();
         PlayerState playerState = ServerState.getPlayerState(server, player.getId());
 
-        // Ensure grave exists within player's PlayerState.graves
-        if (graveId > playerState.graves.size()) {
+        // Get requested grave
+        GraveRecord record = playerState.getGrave(graveId);
+
+        // Ensure grave exists within player's PlayerState
+        if (record == null) {
             res.sendError(Text.translatable("command.generic.error.grave-doesnt-exist", name), null);
             return Command.SINGLE_SUCCESS;
         }
 
-        // Get requested grave
-        NbtCompound grave = (NbtCompound) playerState.graves.get(graveId - 1);
+        // Read the grave's inventories, XP, etc. from the payload store
+        NbtCompound grave = ServerState.loadGrave(server, player.getId(), record);
+
+        if (grave == null) {
+            res.sendError(Text.translatable("command.generic.error.grave-doesnt-exist", name), null);
+            return Command.SINGLE_SUCCESS;
+        }
+
+        int position = playerState.indexOf(record) + 1;
 
         // Get player entity and ensure they are online
         GameProfile entityProfile = recipient != null ? recipient : player;
@@ -87,10 +98,10 @@ public class RestoreCommand {
             int page;
 
             // Resolve the page number
-            if (graveId % 5 == 0) {
-                page = graveId / 5;
+            if (position % 5 == 0) {
+                page = position / 5;
             } else {
-                page = (int) (Math.floor((double) graveId / 5) + 1);
+                page = (int) (Math.floor((double) position / 5) + 1);
             }
 
             // Run the List Command
@@ -180,7 +191,7 @@ public class RestoreCommand {
             res.highlight(pos.getY()),
             res.highlight(pos.getZ()),
             res.highlight(created),
-            res.highlight(graveId + 1),
+            res.highlight(graveId),
             res.highlight(source)
         ));
     }
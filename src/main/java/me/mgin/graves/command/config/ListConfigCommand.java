@@ -3,8 +3,8 @@ package me.mgin.graves.command.config;
 import com.mojang.brigadier.Command;
 import com.mojang.brigadier.context.CommandContext;
 import com.mojang.brigadier.exceptions.CommandSyntaxException;
-import me.mgin.graves.Graves;
 import me.mgin.graves.command.utility.CommandContextData;
+import me.mgin.graves.config.ClientConfigRegistry;
 import me.mgin.graves.config.GravesConfig;
 import me.mgin.graves.util.NbtHelper;
 import me.mgin.graves.util.Responder;
@@ -64,7 +64,7 @@ public class ListConfigCommand {
         PlayerEntity player = source.getPlayer();
 
         if (player != null) {
-            GravesConfig config = Graves.clientConfigs.get(player.getGameProfile());
+            GravesConfig config = ClientConfigRegistry.get(player.getUuid());
 
             try {
                 NbtCompound nbt = NbtHelper.fromNbtProviderString(config.serialize());
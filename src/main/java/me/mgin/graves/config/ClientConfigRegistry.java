@@ -0,0 +1,106 @@
+package me.mgin.graves.config;
+
+import me.mgin.graves.networking.config.ConfigCodec;
+import me.mgin.graves.networking.config.ConfigNetworking;
+import net.fabricmc.fabric.api.networking.v1.PacketByteBufs;
+import net.fabricmc.fabric.api.networking.v1.ServerPlayNetworking;
+import net.minecraft.network.PacketByteBuf;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.server.network.ServerPlayerEntity;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiConsumer;
+
+/**
+ * Holds the configs sent to the server by each player's client. Every entry is an immutable pair of config and
+ * version which is replaced as a whole, so readers on any thread never lock or see a partial update.
+ * <p>
+ * Updates arrive on the network thread and are queued; the updates a player sent during a tick are merged and
+ * applied once at the end of the tick.
+ */
+public class ClientConfigRegistry {
+    private static final Map<UUID, Entry> entries = new ConcurrentHashMap<>();
+    private static final Map<UUID, Pending> pending = new ConcurrentHashMap<>();
+
+    /**
+     * A player's client config and the version it was sent as; versions only ever increase.
+     */
+    public record Entry(GravesConfig config, int version) {}
+
+    private record Pending(ServerPlayerEntity player, ConfigCodec.ConfigUpdate update) {}
+
+    /**
+     * Get the client config of the given player.
+     *
+     * @param uuid UUID
+     * @return GravesConfig or null if the player has not sent one
+     */
+    public static GravesConfig get(UUID uuid) {
+        Entry entry = entries.get(uuid);
+        return entry != null ? entry.config() : null;
+    }
+
+    public static int getVersion(UUID uuid) {
+        Entry entry = entries.get(uuid);
+        return entry != null ? entry.version() : 0;
+    }
+
+    public static void forEach(BiConsumer<UUID, GravesConfig> consumer) {
+        entries.forEach((uuid, entry) -> consumer.accept(uuid, entry.config()));
+    }
+
+    /**
+     * Queues an update received from the player; safe to call from the network thread.
+     *
+     * @param player ServerPlayerEntity
+     * @param update ConfigCodec.ConfigUpdate
+     */
+    public static void submit(ServerPlayerEntity player, ConfigCodec.ConfigUpdate update) {
+        pending.merge(player.getUuid(), new Pending(player, update),
+            (queued, next) -> new Pending(next.player(), queued.update().then(next.update())));
+    }
+
+    /**
+     * Applies every queued update and acknowledges the resulting versions; called at the end of every tick.
+     *
+     * @param server MinecraftServer
+     */
+    public static void applyPending(MinecraftServer server) {
+        if (pending.isEmpty()) return;
+
+        for (UUID uuid : pending.keySet()) {
+            Pending queued = pending.remove(uuid);
+            if (queued == null || queued.player().isDisconnected()) continue;
+
+            ConfigCodec.ConfigUpdate update = queued.update();
+            Entry entry = entries.get(uuid);
+            int version = entry != null ? entry.version() : 0;
+
+            // A delta against a version we don't have; acknowledging our version makes the client resend
+            if (update.isFull() || update.baseVersion() == version) {
+                GravesConfig config = update.applyTo(entry != null ? entry.config() : null);
+                version = update.version();
+
+                entries.put(uuid, new Entry(config, version));
+                ConfigResolver.updatePlayer(uuid, config);
+            }
+
+            PacketByteBuf buf = PacketByteBufs.create();
+            buf.writeVarInt(version);
+            ServerPlayNetworking.send(queued.player(), ConfigNetworking.ACK_CONFIG_S2C, buf);
+        }
+    }
+
+    /**
+     * Forgets the player's client config and any queued updates.
+     *
+     * @param uuid UUID
+     */
+    public static void remove(UUID uuid) {
+        pending.remove(uuid);
+        entries.remove(uuid);
+        ConfigResolver.removePlayer(uuid);
+    }
+}
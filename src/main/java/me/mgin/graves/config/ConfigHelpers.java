@@ -2,7 +2,6 @@ package me.mgin.graves.config;
 
 import com.google.gson.Gson;
 import com.mojang.authlib.GameProfile;
-import me.mgin.graves.Graves;
 import me.shedaniel.autoconfig.AutoConfig;
 
 import java.lang.reflect.Field;
@@ -63,27 +62,7 @@ public class ConfigHelpers {
      * @return T
      */
     public static <T> T resolve(String option, GameProfile profile) {
-        GravesConfig config = GravesConfig.getConfig();
-
-        // Switches to the client config if applicable.
-        if (config.server.clientOptions.contains(option) && Graves.clientConfigs.containsKey(profile)) {
-            GravesConfig clientConfig = Graves.clientConfigs.get(profile);
-            if (clientConfig != null) config = clientConfig;
-        }
-
-        try {
-            Field subclass = determineSubClass(option);
-            if (subclass != null) {
-                Field field = subclass.getType().getDeclaredField(option);
-                Object result = field.get(subclass.get(config));
-                return (T) result;
-            }
-        } catch (NullPointerException | NoSuchFieldException | IllegalAccessException e) {
-            throw new RuntimeException(e);
-        }
-
-        // Worse case, throw an error.
-        throw new RuntimeException("Something went wrong trying to access " + option);
+        return (T) ConfigResolver.resolve(ConfigResolver.getId(option), profile);
     }
 
     /**
@@ -69,6 +69,7 @@ public class ConfigOptions {
             case "capType", "percentageType" -> ExperienceType.valueOf(value);
             case "decayRobbing" -> DecayingGrave.BlockDecay.valueOf(value);
             case "mergeOrder" -> GraveMergeOrder.valueOf(value);
+            case "unloadedChunkPolicy" -> UnloadedChunkPolicy.valueOf(value);
             default -> throw new IllegalStateException("Unexpected value for '" + option + "': " + value);
         };
     }
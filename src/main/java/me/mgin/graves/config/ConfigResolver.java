@@ -0,0 +1,215 @@
+package me.mgin.graves.config;
+
+import com.mojang.authlib.GameProfile;
+import me.shedaniel.autoconfig.AutoConfig;
+import net.minecraft.util.ActionResult;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Resolves config options through a table of precompiled getters. Every option is given an int id (its index in
+ * {@link ConfigOptions#all}) and a method handle reading it straight from a {@link GravesConfig}; the options that
+ * clients may override are held as a bitset which is rebuilt whenever the config is loaded or saved.
+ * <p>
+ * Resolved values are kept as snapshots: one for the server config, and one per player with a client config in
+ * which the server values are already merged with the player's allowed overrides. Snapshots are replaced rather
+ * than modified, so they can be read from any thread without locking.
+ */
+public class ConfigResolver {
+    private static final Map<String, Integer> ids = new HashMap<>();
+    private static MethodHandle[] getters = new MethodHandle[0];
+    private static Class<?>[] types = new Class<?>[0];
+    private static int schemaHash = 0;
+    private static volatile BitSet clientOverrides = new BitSet();
+    private static volatile Object[] serverSnapshot = new Object[0];
+    private static final Map<UUID, Object[]> playerSnapshots = new ConcurrentHashMap<>();
+
+    /**
+     * Compiles the getter table; must be called after {@link ConfigOptions#generateConfigOptions()}.
+     */
+    public static void initialize() {
+        MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+        MethodType type = MethodType.methodType(Object.class, GravesConfig.class);
+        getters = new MethodHandle[ConfigOptions.all.size()];
+        types = new Class<?>[ConfigOptions.all.size()];
+
+        try {
+            for (String subclass : ConfigOptions.subclass) {
+                Field subclassField = GravesConfig.class.getDeclaredField(subclass);
+                MethodHandle subclassGetter = lookup.unreflectGetter(subclassField);
+
+                for (String option : ConfigOptions.options.get(subclass)) {
+                    Field field = subclassField.getType().getDeclaredField(option);
+                    MethodHandle getter = MethodHandles.filterReturnValue(subclassGetter,
+                        lookup.unreflectGetter(field));
+
+                    int id = ConfigOptions.all.indexOf(option);
+                    ids.put(option, id);
+                    getters[id] = getter.asType(type);
+                    types[id] = field.getType();
+                }
+            }
+        } catch (NoSuchFieldException | IllegalAccessException e) {
+            throw new RuntimeException(e);
+        }
+
+        // Identifies the option layout, so peers with a different set of options don't misread each other
+        for (int id = 0; id < types.length; id++) {
+            schemaHash = 31 * schemaHash + (ConfigOptions.all.get(id) + ":" + types[id].getName()).hashCode();
+        }
+
+        rebuild(GravesConfig.getConfig());
+
+        AutoConfig.getConfigHolder(GravesConfig.class).registerLoadListener((manager, config) -> {
+            rebuild(config);
+            return ActionResult.SUCCESS;
+        });
+
+        AutoConfig.getConfigHolder(GravesConfig.class).registerSaveListener((manager, config) -> {
+            rebuild(config);
+            return ActionResult.SUCCESS;
+        });
+    }
+
+    /**
+     * Builds the effective config snapshot of a player whose client config was received.
+     *
+     * @param uuid UUID
+     * @param clientConfig GravesConfig
+     */
+    public static void updatePlayer(UUID uuid, GravesConfig clientConfig) {
+        playerSnapshots.put(uuid, snapshot(serverSnapshot, clientOverrides, clientConfig));
+    }
+
+    /**
+     * Drops the effective config snapshot of a player; their options resolve to the server config afterwards.
+     *
+     * @param uuid UUID
+     */
+    public static void removePlayer(UUID uuid) {
+        playerSnapshots.remove(uuid);
+    }
+
+    /**
+     * Get the id of the given option.
+     *
+     * @param option String
+     * @return int
+     */
+    public static int getId(String option) {
+        Integer id = ids.get(option);
+        if (id == null) throw new RuntimeException("Something went wrong trying to access " + option);
+        return id;
+    }
+
+    public static int getOptionCount() {
+        return getters.length;
+    }
+
+    public static Class<?> getType(int id) {
+        return types[id];
+    }
+
+    public static int getSchemaHash() {
+        return schemaHash;
+    }
+
+    /**
+     * Whether clients are allowed to override the given option.
+     *
+     * @param id int
+     * @return boolean
+     */
+    public static boolean isClientOverride(int id) {
+        return clientOverrides.get(id);
+    }
+
+    /**
+     * Resolves the value of the option with the given id; respects client option handling.
+     *
+     * @param id int
+     * @param profile GameProfile
+     * @return Object
+     */
+    public static Object resolve(int id, GameProfile profile) {
+        Object[] snapshot = profile != null ? playerSnapshots.get(profile.getId()) : null;
+        return (snapshot != null ? snapshot : serverSnapshot)[id];
+    }
+
+    /**
+     * Reads the option with the given id from the given config.
+     *
+     * @param id int
+     * @param config GravesConfig
+     * @return Object
+     */
+    public static Object get(int id, GravesConfig config) {
+        try {
+            return (Object) getters[id].invokeExact(config);
+        } catch (Throwable e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Reads every option from the given config into a new snapshot.
+     *
+     * @param config GravesConfig
+     * @return Object[] indexed by option id
+     */
+    public static Object[] readAll(GravesConfig config) {
+        return snapshot(null, null, config);
+    }
+
+    /**
+     * Rebuilds the client override bitset and every snapshot from the given server config.
+     *
+     * @param config GravesConfig
+     */
+    private static void rebuild(GravesConfig config) {
+        BitSet overrides = new BitSet(getters.length);
+        List<String> clientOptions = config.server.clientOptions;
+
+        for (String option : clientOptions) {
+            Integer id = ids.get(option);
+            if (id != null) overrides.set(id);
+        }
+
+        Object[] server = snapshot(null, overrides, config);
+        clientOverrides = overrides;
+        serverSnapshot = server;
+
+        ClientConfigRegistry.forEach((uuid, clientConfig) ->
+            playerSnapshots.put(uuid, snapshot(server, overrides, clientConfig)));
+    }
+
+    /**
+     * Reads every option from the given config; if a base snapshot is given, only the overridable options are read
+     * and the rest are taken from the base.
+     */
+    private static Object[] snapshot(Object[] base, BitSet overrides, GravesConfig config) {
+        Object[] snapshot = new Object[getters.length];
+
+        for (int id = 0; id < getters.length; id++) {
+            if (base != null && !overrides.get(id)) {
+                snapshot[id] = base[id];
+                continue;
+            }
+
+            // Lists are copied so later changes to the config never leak into the snapshot
+            Object value = get(id, config);
+            snapshot[id] = value instanceof List<?> list ? List.copyOf(list) : value;
+        }
+
+        return snapshot;
+    }
+}
@@ -170,5 +170,15 @@ public class GravesConfig extends ConfigHelpers implements ConfigData {
 
         @ConfigEntry.Gui.Tooltip
         public List<String> clientOptions = new ArrayList<>();
+
+        @ConfigEntry.Gui.Tooltip
+        public boolean shardedGraveStorage = false;
+
+        @ConfigEntry.Gui.Tooltip
+        public boolean asyncGravePlacement = false;
+
+        @ConfigEntry.Gui.Tooltip
+        @ConfigEntry.Gui.EnumHandler(option = ConfigEntry.Gui.EnumHandler.EnumDisplayOption.BUTTON)
+        public UnloadedChunkPolicy unloadedChunkPolicy = UnloadedChunkPolicy.SKIP;
     }
 }
@@ -0,0 +1,5 @@
+package me.mgin.graves.config.enums;
+
+public enum UnloadedChunkPolicy {
+    SKIP, LOAD
+}
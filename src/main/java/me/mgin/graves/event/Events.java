@@ -3,10 +3,17 @@ package me.mgin.graves.event;
 import dev.emi.trinkets.api.SlotReference;
 import dev.emi.trinkets.api.TrinketEnums;
 import dev.emi.trinkets.api.event.TrinketDropCallback;
+import me.mgin.graves.block.decay.DecayScheduler;
 import me.mgin.graves.event.server.AttackBlockHandler;
 import me.mgin.graves.event.server.PlayerBlockBreakHandler;
+import me.mgin.graves.event.server.ServerStateHandler;
 import me.mgin.graves.event.server.TrinketDropHandler;
 import me.mgin.graves.event.server.UseBlockHandler;
+import me.mgin.graves.tags.BlockClassification;
+import net.fabricmc.fabric.api.event.lifecycle.v1.CommonLifecycleEvents;
+import net.fabricmc.fabric.api.event.lifecycle.v1.ServerBlockEntityEvents;
+import net.fabricmc.fabric.api.event.lifecycle.v1.ServerLifecycleEvents;
+import net.fabricmc.fabric.api.event.lifecycle.v1.ServerTickEvents;
 import net.fabricmc.fabric.api.event.player.AttackBlockCallback;
 import net.fabricmc.fabric.api.event.player.PlayerBlockBreakEvents;
 import net.fabricmc.fabric.api.event.player.UseBlockCallback;
@@ -36,6 +43,19 @@ public class Events {
                 PlayerBlockBreakHandler.handleBeforeEvent(player, entity)
         );
 
+        // Handle the grave journal
+        ServerTickEvents.END_SERVER_TICK.register(ServerStateHandler::handleEndTick);
+        ServerLifecycleEvents.SERVER_STOPPING.register(ServerStateHandler::handleServerStopping);
+        ServerLifecycleEvents.SERVER_STOPPED.register(ServerStateHandler::handleServerStopped);
+
+        // Schedule the decay of graves while they're loaded
+        ServerBlockEntityEvents.BLOCK_ENTITY_LOAD.register(DecayScheduler::onLoad);
+        ServerBlockEntityEvents.BLOCK_ENTITY_UNLOAD.register(DecayScheduler::onUnload);
+        ServerTickEvents.END_WORLD_TICK.register(DecayScheduler::tick);
+
+        // Reclassify block states for grave placement whenever the grave block tags may have changed
+        CommonLifecycleEvents.TAGS_LOADED.register((registries, client) -> BlockClassification.rebuild());
+
         // Needed to override trinket drop behavior
         if (FabricLoader.getInstance().isModLoaded("trinkets"))
             TrinketDropCallback.EVENT.register(
@@ -0,0 +1,34 @@
+package me.mgin.graves.event.server;
+
+import me.mgin.graves.block.decay.DecayScheduler;
+import me.mgin.graves.block.utility.PendingGraves;
+import me.mgin.graves.state.ServerState;
+import net.minecraft.server.MinecraftServer;
+
+public class ServerStateHandler {
+    /**
+     * Places the graves whose off-thread position search finished, then writes any grave journal events logged
+     * during the tick as a single batch.
+     */
+    public static void handleEndTick(MinecraftServer server) {
+        PendingGraves.placeReady(server);
+        ServerState.flushJournal(server);
+    }
+
+    /**
+     * Stores graves that are still pending as grave backups, and ensures the final world save includes any journaled
+     * grave changes.
+     */
+    public static void handleServerStopping(MinecraftServer server) {
+        PendingGraves.flush(server);
+        ServerState.prepareForShutdown(server);
+    }
+
+    /**
+     * Closes the grave journal and waits for pending grave storage writes after the final world save.
+     */
+    public static void handleServerStopped(MinecraftServer server) {
+        ServerState.closeStorage(server);
+        DecayScheduler.clear();
+    }
+}
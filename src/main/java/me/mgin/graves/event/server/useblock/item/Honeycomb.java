@@ -1,5 +1,6 @@
 package me.mgin.graves.event.server.useblock.item;
 
+import me.mgin.graves.block.decay.DecayStateManager;
 import me.mgin.graves.block.entity.GraveBlockEntity;
 import me.mgin.graves.block.utility.Particles;
 import me.mgin.graves.block.utility.Permission;
@@ -41,6 +42,7 @@ public class Honeycomb {
         // Deduct from stack and set no decay to true
         if (!player.isCreative()) player.getStackInHand(hand).decrement(1);
         entity.setNoDecay(1);
+        DecayStateManager.updateDecay(world, pos);
 
         // Polish
         Particles.spawnAtBlock(world, pos, ParticleTypes.WAX_ON, 8, 3);
@@ -49,6 +49,7 @@ public class Shovel {
 
             // Remove honeycomb
             entity.setNoDecay(0);
+            DecayStateManager.updateDecay(world, pos);
 
             // Damage the item, respecting unbreaking enchant and creative
             float unbreaking = (float) EnchantmentHelper.getLevel(Enchantments.UNBREAKING, player.getActiveItem());
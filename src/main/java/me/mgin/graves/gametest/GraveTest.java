@@ -1,6 +1,9 @@
 package me.mgin.graves.gametest;
 
+import me.mgin.graves.gametest.tests.DeathTest;
+import me.mgin.graves.gametest.tests.DecayTest;
 import me.mgin.graves.gametest.tests.ExplosionTest;
+import me.mgin.graves.gametest.tests.InventoryFormatTest;
 import me.mgin.graves.gametest.tests.PlaceGraveTest;
 import me.mgin.graves.gametest.tests.RetrieveGraveTest;
 import me.mgin.graves.gametest.tests.WaterlogTest;
@@ -10,6 +13,8 @@ import net.minecraft.test.TestContext;
 import net.minecraft.util.math.BlockPos;
 import net.minecraft.world.World;
 
+import java.util.List;
+
 public class GraveTest {
     @GameTest(templateName = "forgottengraves:placement_tests")
     public void gravePlacementTests(TestContext context) {
@@ -95,4 +100,55 @@ public class GraveTest {
         GraveTestHelper.runCommand(context, "graves server config reset");
         context.complete();
     }
+
+    @GameTest(templateName = "forgottengraves:generic_tests")
+    public void deathTests(TestContext context) {
+        PlayerEntity player = context.createMockSurvivalPlayer();
+        BlockPos pos = context.getAbsolutePos(new BlockPos(3, 2, 3));
+
+        // Remove the grave in the center of the generic test platform
+        GraveTestHelper.removeGrave(GraveTestHelper.getWorld(player, World.OVERWORLD), pos);
+
+        DeathTest.singleDeath(context, player, pos);
+
+        // Only the first death of a tick is placed right away, so the batch starts on the next tick
+        List<PlayerEntity> players = List.of(context.createMockSurvivalPlayer(), context.createMockSurvivalPlayer(),
+            context.createMockSurvivalPlayer());
+        context.waitAndRun(1, () -> DeathTest.multipleDeaths(context, players, pos));
+    }
+
+    @GameTest(templateName = "forgottengraves:generic_tests", tickLimit = 200)
+    public void unloadedChunkTests(TestContext context) {
+        PlayerEntity player = context.createMockSurvivalPlayer();
+
+        // Far enough from the test platform for its chunks not to be loaded
+        BlockPos pos = context.getAbsolutePos(new BlockPos(3, 2, 3)).add(4096, 0, 0);
+
+        GraveTestHelper.runCommand(context, "graves server config set unloadedChunkPolicy LOAD");
+        DeathTest.deathNextToUnloadedChunks(context, player, pos);
+    }
+
+    @GameTest(templateName = "forgottengraves:generic_tests")
+    public void decayTests(TestContext context) {
+        PlayerEntity player = context.createMockSurvivalPlayer();
+        BlockPos pos = context.getAbsolutePos(new BlockPos(3, 2, 3));
+
+        // Remove the grave in the center of the generic test platform
+        GraveTestHelper.removeGrave(GraveTestHelper.getWorld(player, World.OVERWORLD), pos);
+
+        GraveTestHelper.runCommand(context, "graves server config set maxStageTimeSeconds 1");
+        DecayTest.stageTransition(context, player, pos, () -> DecayTest.catchUp(context, player, pos));
+    }
+
+    @GameTest(templateName = "forgottengraves:generic_tests")
+    public void inventoryFormatTests(TestContext context) {
+        PlayerEntity player = context.createMockSurvivalPlayer();
+        BlockPos pos = context.getAbsolutePos(new BlockPos(3, 2, 3));
+
+        // Remove the grave in the center of the generic test platform
+        GraveTestHelper.removeGrave(GraveTestHelper.getWorld(player, World.OVERWORLD), pos);
+
+        InventoryFormatTest.preFormatGrave(context, player, pos);
+        context.complete();
+    }
 }
@@ -0,0 +1,140 @@
+package me.mgin.graves.gametest.tests;
+
+import me.mgin.graves.block.entity.GraveBlockEntity;
+import me.mgin.graves.gametest.GraveTestHelper;
+import me.mgin.graves.state.GraveRecord;
+import me.mgin.graves.state.PlayerState;
+import me.mgin.graves.state.ServerState;
+import net.minecraft.entity.player.PlayerEntity;
+import net.minecraft.item.ItemStack;
+import net.minecraft.item.Items;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.server.world.ServerWorld;
+import net.minecraft.test.TestContext;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.world.World;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+public class DeathTest {
+    /**
+     * Kills a player, which goes through the player mixin, and ensures their grave is placed right away holding their
+     * items.
+     */
+    public static void singleDeath(TestContext context, PlayerEntity player, BlockPos pos) {
+        System.out.println(">> Running " + Thread.currentThread().getStackTrace()[1].getMethodName() + " <<");
+        World world = GraveTestHelper.getWorld(player, World.OVERWORLD);
+
+        giveDiamonds(player);
+        GraveTestHelper.teleportPlayer(player, pos);
+        player.kill();
+
+        // A lone death doesn't wait for the end of the tick
+        GraveTestHelper.checkGraveExists(context, player, pos, World.OVERWORLD);
+        context.assertTrue(world.getBlockEntity(pos) instanceof GraveBlockEntity graveEntity
+                && countDiamonds(graveEntity) == 5,
+            "Expected the grave at " + pos + " to hold the player's 5 diamonds.");
+        context.assertTrue(player.getInventory().isEmpty(), "Expected the player's inventory to be empty.");
+
+        GraveTestHelper.removeGrave(world, pos);
+    }
+
+    /**
+     * Kills several players during the same tick; the first grave is placed right away and the rest at the end of
+     * the tick, each at its own position and holding its owner's items.
+     */
+    public static void multipleDeaths(TestContext context, List<PlayerEntity> players, BlockPos pos) {
+        System.out.println(">> Running " + Thread.currentThread().getStackTrace()[1].getMethodName() + " <<");
+        World world = GraveTestHelper.getWorld(players.get(0), World.OVERWORLD);
+
+        for (PlayerEntity player : players) {
+            giveDiamonds(player);
+            GraveTestHelper.teleportPlayer(player, pos);
+            player.kill();
+        }
+
+        GraveTestHelper.checkGraveExists(context, players.get(0), pos, World.OVERWORLD);
+
+        context.waitAndRun(1, () -> {
+            List<BlockPos> graves = findGraves(world, pos);
+            context.assertTrue(graves.size() == players.size(),
+                "Expected " + players.size() + " graves around " + pos + " got " + graves.size());
+
+            for (PlayerEntity player : players) {
+                boolean found = graves.stream().anyMatch(gravePos ->
+                    world.getBlockEntity(gravePos) instanceof GraveBlockEntity graveEntity
+                        && graveEntity.isGraveOwner(player) && countDiamonds(graveEntity) == 5);
+                context.assertTrue(found, "Expected a grave holding 5 diamonds for " + player.getName().getString());
+            }
+
+            graves.forEach(gravePos -> GraveTestHelper.removeGrave(world, gravePos));
+            GraveTestHelper.runCommand(context, "graves server config reset");
+            context.complete();
+        });
+    }
+
+    /**
+     * Kills a player next to unloaded chunks while graves wait for them to load; the grave is backed up while it
+     * waits, and the backup is replaced by the placed grave once the chunks have loaded.
+     */
+    public static void deathNextToUnloadedChunks(TestContext context, PlayerEntity player, BlockPos pos) {
+        System.out.println(">> Running " + Thread.currentThread().getStackTrace()[1].getMethodName() + " <<");
+        ServerWorld world = context.getWorld();
+        MinecraftServer server = world.getServer();
+        UUID uuid = player.getUuid();
+
+        giveDiamonds(player);
+        GraveTestHelper.teleportPlayer(player, pos);
+        player.kill();
+
+        context.waitAndRun(1, () -> {
+            PlayerState playerState = ServerState.getPlayerState(server, uuid);
+            context.assertTrue(playerState.getGraveCount() == 1,
+                "Expected the waiting grave to be backed up, got " + playerState.getGraveCount() + " graves");
+            GraveRecord backup = playerState.getGraves().iterator().next();
+
+            context.succeedWhen(() -> {
+                context.assertTrue(playerState.getGraveCount() == 1, "Expected the backup to be released");
+                GraveRecord placed = playerState.getGraves().iterator().next();
+                context.assertTrue(placed.getId() != backup.getId(), "Expected the grave to be placed");
+
+                BlockPos gravePos = placed.getPos();
+                context.assertTrue(world.getBlockEntity(gravePos) instanceof GraveBlockEntity graveEntity
+                        && countDiamonds(graveEntity) == 5,
+                    "Expected the grave at " + gravePos + " to hold the player's 5 diamonds.");
+
+                GraveTestHelper.removeGrave(world, gravePos);
+                GraveTestHelper.runCommand(context, "graves server config reset");
+            });
+        });
+    }
+
+    // Helper functions
+    private static void giveDiamonds(PlayerEntity player) {
+        ItemStack stack = Items.DIAMOND.getDefaultStack();
+        stack.setCount(5);
+        player.giveItemStack(stack);
+    }
+
+    private static int countDiamonds(GraveBlockEntity graveEntity) {
+        return graveEntity.getInventory("Items").stream()
+            .filter(stack -> stack.isOf(Items.DIAMOND))
+            .mapToInt(ItemStack::getCount)
+            .sum();
+    }
+
+    /**
+     * Finds every grave within a few blocks of the given position.
+     */
+    private static List<BlockPos> findGraves(World world, BlockPos pos) {
+        List<BlockPos> graves = new ArrayList<>();
+
+        for (BlockPos candidate : BlockPos.iterate(pos.add(-5, -3, -5), pos.add(5, 3, 5))) {
+            if (world.getBlockEntity(candidate) instanceof GraveBlockEntity) graves.add(candidate.toImmutable());
+        }
+
+        return graves;
+    }
+}
@@ -0,0 +1,66 @@
+package me.mgin.graves.gametest.tests;
+
+import me.mgin.graves.block.GraveBlocks;
+import me.mgin.graves.block.decay.DecayStateManager;
+import me.mgin.graves.block.entity.GraveBlockEntity;
+import me.mgin.graves.block.utility.PlaceGrave;
+import me.mgin.graves.gametest.GraveTestHelper;
+import net.minecraft.block.Block;
+import net.minecraft.entity.player.PlayerEntity;
+import net.minecraft.test.TestContext;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.world.World;
+
+public class DecayTest {
+    // maxStageTimeSeconds is set to 1 for these tests
+    private static final int STAGE_TICKS = 20;
+
+    /**
+     * Places a grave and ensures the scheduler moves it to the next stage once it has spent maxStageTimeSeconds in
+     * its first one.
+     */
+    public static void stageTransition(TestContext context, PlayerEntity player, BlockPos pos, Runnable next) {
+        System.out.println(">> Running " + Thread.currentThread().getStackTrace()[1].getMethodName() + " <<");
+        World world = GraveTestHelper.getWorld(player, World.OVERWORLD);
+
+        PlaceGrave.place(world, GraveTestHelper.posToVec3d(pos), player);
+        checkStage(context, world, pos, GraveBlocks.GRAVE);
+
+        context.waitAndRun(STAGE_TICKS + 5, () -> {
+            checkStage(context, world, pos, GraveBlocks.GRAVE_OLD);
+            next.run();
+        });
+    }
+
+    /**
+     * Moves a grave's clock back as if it had been unloaded for a stage, and ensures it catches up on that stage and
+     * is scheduled for the one after it.
+     */
+    public static void catchUp(TestContext context, PlayerEntity player, BlockPos pos) {
+        System.out.println(">> Running " + Thread.currentThread().getStackTrace()[1].getMethodName() + " <<");
+        World world = GraveTestHelper.getWorld(player, World.OVERWORLD);
+
+        if (!(world.getBlockEntity(pos) instanceof GraveBlockEntity graveEntity)) {
+            context.assertTrue(false, "Expected a grave at " + pos);
+            return;
+        }
+
+        graveEntity.advanceDecayClock(-STAGE_TICKS);
+        DecayStateManager.updateDecay(world, pos);
+        checkStage(context, world, pos, GraveBlocks.GRAVE_WEATHERED);
+
+        context.succeedWhen(() -> {
+            checkStage(context, world, pos, GraveBlocks.GRAVE_FORGOTTEN);
+
+            GraveTestHelper.removeGrave(world, pos);
+            GraveTestHelper.runCommand(context, "graves server config reset");
+        });
+    }
+
+    // Helper functions
+    private static void checkStage(TestContext context, World world, BlockPos pos, Block expected) {
+        Block block = world.getBlockState(pos).getBlock();
+        context.assertTrue(block == expected, "Expected " + expected.getName().getString() + " at " + pos + " got "
+            + block.getName().getString());
+    }
+}
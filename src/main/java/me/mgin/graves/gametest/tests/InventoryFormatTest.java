@@ -0,0 +1,114 @@
+package me.mgin.graves.gametest.tests;
+
+import me.mgin.graves.block.GraveBlocks;
+import me.mgin.graves.block.entity.GraveBlockEntity;
+import me.mgin.graves.gametest.GraveTestHelper;
+import me.mgin.graves.util.NbtHelper;
+import net.minecraft.block.BlockState;
+import net.minecraft.enchantment.Enchantments;
+import net.minecraft.entity.player.PlayerEntity;
+import net.minecraft.inventory.Inventories;
+import net.minecraft.item.ItemStack;
+import net.minecraft.item.Items;
+import net.minecraft.nbt.NbtCompound;
+import net.minecraft.test.TestContext;
+import net.minecraft.text.Text;
+import net.minecraft.util.collection.DefaultedList;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.world.World;
+
+public class InventoryFormatTest {
+    /**
+     * Loads a grave stored before the compact inventory format, whose inventories are listed in its ItemCount, and
+     * ensures every slot and stack comes back intact; both when decoded right away, and after the grave has been
+     * written and read again without its inventory ever being decoded.
+     */
+    public static void preFormatGrave(TestContext context, PlayerEntity player, BlockPos pos) {
+        System.out.println(">> Running " + Thread.currentThread().getStackTrace()[1].getMethodName() + " <<");
+        World world = GraveTestHelper.getWorld(player, World.OVERWORLD);
+        DefaultedList<ItemStack> expected = createInventory();
+
+        // Graves before the format wrote each stack with its slot and listed the inventory size in ItemCount
+        NbtCompound itemCount = new NbtCompound();
+        itemCount.putInt("Items", expected.size());
+
+        NbtCompound oldNbt = new NbtCompound();
+        oldNbt.put("Items", Inventories.writeNbt(new NbtCompound(), expected, true));
+        oldNbt.put("ItemCount", itemCount);
+        oldNbt.putInt("XP", 0);
+        oldNbt.putInt("noDecay", 0);
+        oldNbt.putLong("mstime", 1681418977105L);
+        oldNbt.put("GraveOwner", NbtHelper.writeGameProfile(new NbtCompound(), player.getGameProfile()));
+
+        BlockState state = GraveBlocks.GRAVE.getDefaultState();
+        world.setBlockState(pos, state);
+
+        if (!(world.getBlockEntity(pos) instanceof GraveBlockEntity graveEntity)) {
+            context.assertTrue(false, "Expected a grave at " + pos);
+            return;
+        }
+
+        graveEntity.readNbt(oldNbt);
+
+        // Written before the inventory is decoded, so the upgraded NBT is written as it was read
+        NbtCompound newNbt = graveEntity.toNbt();
+        context.assertFalse(newNbt.contains("ItemCount"), "Expected ItemCount to be dropped from upgraded graves.");
+        context.assertTrue(NbtHelper.isCompactInventory(newNbt.getCompound("Items")),
+            "Expected the upgraded inventory to be in the compact inventory format.");
+
+        GraveBlockEntity reloaded = new GraveBlockEntity(pos, state);
+        reloaded.readNbt(newNbt);
+
+        checkInventory(context, "upgraded", expected, graveEntity.getInventory("Items"));
+        checkInventory(context, "reloaded", expected, reloaded.getInventory("Items"));
+
+        GraveTestHelper.removeGrave(world, pos);
+    }
+
+    // Helper functions
+    /**
+     * Creates a player inventory with empty slots between stacks, stacks of every size, stacks with NBT and filled
+     * armor and off-hand slots.
+     */
+    private static DefaultedList<ItemStack> createInventory() {
+        DefaultedList<ItemStack> stacks = DefaultedList.ofSize(NbtHelper.VANILLA_INVENTORY_SIZE, ItemStack.EMPTY);
+
+        ItemStack sword = new ItemStack(Items.DIAMOND_SWORD);
+        sword.setDamage(117);
+        sword.addEnchantment(Enchantments.SHARPNESS, 3);
+        sword.setCustomName(Text.literal("Keepsake"));
+
+        ItemStack book = new ItemStack(Items.ENCHANTED_BOOK);
+        book.addEnchantment(Enchantments.MENDING, 1);
+
+        stacks.set(0, sword);
+        stacks.set(1, new ItemStack(Items.TORCH, 13));
+        stacks.set(4, new ItemStack(Items.STONE, 64));
+        stacks.set(9, book);
+        stacks.set(22, new ItemStack(Items.ENDER_PEARL, 16));
+        stacks.set(35, new ItemStack(Items.DIRT, 1));
+        stacks.set(36, damaged(Items.DIAMOND_BOOTS.getDefaultStack(), 3));
+        stacks.set(38, damaged(Items.NETHERITE_CHESTPLATE.getDefaultStack(), 40));
+        stacks.set(39, damaged(Items.IRON_HELMET.getDefaultStack(), 0));
+        stacks.set(40, damaged(Items.SHIELD.getDefaultStack(), 12));
+
+        return stacks;
+    }
+
+    private static ItemStack damaged(ItemStack stack, int damage) {
+        stack.setDamage(damage);
+        return stack;
+    }
+
+    private static void checkInventory(TestContext context, String name, DefaultedList<ItemStack> expected,
+                                       DefaultedList<ItemStack> actual) {
+        context.assertTrue(actual != null && actual.size() == expected.size(),
+            "Expected the " + name + " inventory to have " + expected.size() + " slots.");
+
+        for (int slot = 0; slot < expected.size(); slot++) {
+            context.assertTrue(ItemStack.areEqual(expected.get(slot), actual.get(slot)),
+                "Expected " + expected.get(slot) + " in slot " + slot + " of the " + name + " inventory, got "
+                    + actual.get(slot));
+        }
+    }
+}
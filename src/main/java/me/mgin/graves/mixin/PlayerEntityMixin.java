@@ -66,7 +66,7 @@ public abstract class PlayerEntityMixin extends LivingEntity {
             !preventedByKeepInventory;
 
         if (shouldPlaceGrave) {
-            PlaceGrave.place(this.getWorld(), this.getPos(), player);
+            PlaceGrave.placeOnDeath(this.getWorld(), this.getPos(), player);
         }
 
         // Support for the KEEP_INVENTORY game rule.
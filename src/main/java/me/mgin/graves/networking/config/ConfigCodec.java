@@ -0,0 +1,197 @@
+package me.mgin.graves.networking.config;
+
+import me.mgin.graves.Graves;
+import me.mgin.graves.config.ConfigOptions;
+import me.mgin.graves.config.ConfigResolver;
+import me.mgin.graves.config.GravesConfig;
+import net.minecraft.network.PacketByteBuf;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Binary encoding of config updates. An update is either a full config (base version 0) or a delta holding only
+ * the options that changed since a base version the receiver has acknowledged:
+ * <p>
+ * {@code [byte format][int schemaHash][varint baseVersion][varint version][varint count]([varint id][value])*}
+ * <p>
+ * Booleans are written as a byte, ints and enum ordinals as varints, and string lists as a varint length followed
+ * by the strings.
+ */
+public class ConfigCodec {
+    // Bump whenever the encoding changes
+    private static final byte FORMAT = 1;
+    // Updates are sent by clients too, so list sizes read from them are capped
+    private static final int MAX_LIST_SIZE = 256;
+
+    /**
+     * Writes the options that differ between the base and the given values; every option is written when there is
+     * no base.
+     *
+     * @param buf PacketByteBuf
+     * @param baseVersion int (0 when there is no base)
+     * @param version int
+     * @param base Object[] or null
+     * @param values Object[]
+     */
+    public static void write(PacketByteBuf buf, int baseVersion, int version, Object[] base, Object[] values) {
+        List<Integer> changed = new ArrayList<>();
+        for (int id = 0; id < values.length; id++) {
+            if (base == null || !Objects.equals(base[id], values[id])) changed.add(id);
+        }
+
+        buf.writeByte(FORMAT);
+        buf.writeInt(ConfigResolver.getSchemaHash());
+        buf.writeVarInt(base == null ? 0 : baseVersion);
+        buf.writeVarInt(version);
+        buf.writeVarInt(changed.size());
+
+        for (int id : changed) {
+            buf.writeVarInt(id);
+            writeValue(buf, values[id]);
+        }
+    }
+
+    /**
+     * Reads an update written by {@link #write}.
+     *
+     * @param buf PacketByteBuf
+     * @return ConfigUpdate or null if it was written by an incompatible version of the mod or is malformed
+     */
+    public static ConfigUpdate read(PacketByteBuf buf) {
+        // The schema is checked before anything else, as the option ids and types depend on it
+        byte format = buf.readByte();
+        int schemaHash = buf.readInt();
+
+        if (format != FORMAT || schemaHash != ConfigResolver.getSchemaHash()) {
+            System.err.printf("[%s] Ignoring a config update from an incompatible version.\n", Graves.MOD_ID);
+            return null;
+        }
+
+        int baseVersion = buf.readVarInt();
+        int version = buf.readVarInt();
+        int count = buf.readVarInt();
+        int optionCount = ConfigResolver.getOptionCount();
+
+        if (count < 0 || count > optionCount) return malformed("option count " + count);
+
+        Map<Integer, Object> values = new HashMap<>();
+
+        for (int i = 0; i < count; i++) {
+            int id = buf.readVarInt();
+            if (id < 0 || id >= optionCount) return malformed("option id " + id);
+
+            Object value = readValue(buf, ConfigResolver.getType(id));
+            if (value == null) return malformed("value for " + ConfigOptions.all.get(id));
+
+            values.put(id, value);
+        }
+
+        return new ConfigUpdate(baseVersion, version, values);
+    }
+
+    private static ConfigUpdate malformed(String reason) {
+        System.err.printf("[%s] Ignoring a malformed config update: invalid %s.\n", Graves.MOD_ID, reason);
+        return null;
+    }
+
+    private static void writeValue(PacketByteBuf buf, Object value) {
+        if (value instanceof Boolean bool) {
+            buf.writeBoolean(bool);
+        } else if (value instanceof Integer integer) {
+            buf.writeVarInt(integer);
+        } else if (value instanceof Enum<?> constant) {
+            buf.writeVarInt(constant.ordinal());
+        } else if (value instanceof List<?> list) {
+            buf.writeVarInt(list.size());
+            for (Object entry : list) buf.writeString(String.valueOf(entry));
+        } else {
+            throw new IllegalStateException("Unable to encode config value: " + value);
+        }
+    }
+
+    /**
+     * Reads a single value of the given type.
+     *
+     * @param buf PacketByteBuf
+     * @param type Class
+     * @return Object or null if the value is out of range
+     */
+    private static Object readValue(PacketByteBuf buf, Class<?> type) {
+        if (type == boolean.class) return buf.readBoolean();
+        if (type == int.class) return buf.readVarInt();
+
+        if (type.isEnum()) {
+            Object[] constants = type.getEnumConstants();
+            int ordinal = buf.readVarInt();
+            return ordinal >= 0 && ordinal < constants.length ? constants[ordinal] : null;
+        }
+
+        if (List.class.isAssignableFrom(type)) {
+            int size = buf.readVarInt();
+            if (size < 0 || size > MAX_LIST_SIZE) return null;
+
+            List<String> list = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) list.add(buf.readString());
+            return list;
+        }
+
+        throw new IllegalStateException("Unable to decode config value of type " + type.getName());
+    }
+
+    /**
+     * A decoded config update.
+     *
+     * @param baseVersion the version the update is relative to; 0 for a full config
+     * @param version the version the receiver is at once the update is applied
+     * @param values the changed options, keyed by option id
+     */
+    public record ConfigUpdate(int baseVersion, int version, Map<Integer, Object> values) {
+        public boolean isFull() {
+            return baseVersion == 0;
+        }
+
+        /**
+         * Merges an update that follows this one into a single update; if it doesn't follow on from this update,
+         * the later update replaces it.
+         *
+         * @param next ConfigUpdate
+         * @return ConfigUpdate
+         */
+        public ConfigUpdate then(ConfigUpdate next) {
+            if (next.isFull() || next.baseVersion() != version) return next;
+
+            Map<Integer, Object> merged = new HashMap<>(values);
+            merged.putAll(next.values());
+            return new ConfigUpdate(baseVersion, next.version(), merged);
+        }
+
+        /**
+         * Applies the update on top of the given config. The given config is left untouched; the result is always
+         * a new config.
+         *
+         * @param base GravesConfig or null
+         * @return GravesConfig the updated config
+         */
+        public GravesConfig applyTo(GravesConfig base) {
+            GravesConfig config = new GravesConfig();
+
+            if (!isFull() && base != null) {
+                Object[] previous = ConfigResolver.readAll(base);
+                for (int id = 0; id < previous.length; id++) set(config, id, previous[id]);
+            }
+
+            values.forEach((id, value) -> set(config, id, value));
+            return config;
+        }
+
+        private static void set(GravesConfig config, int id, Object value) {
+            // Lists are copied so the new config owns a mutable list of its own
+            if (value instanceof List<?> list) value = new ArrayList<>(list);
+            config.setDynamicField(ConfigOptions.all.get(id), value);
+        }
+    }
+}
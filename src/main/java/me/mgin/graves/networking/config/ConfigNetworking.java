@@ -10,6 +10,7 @@ public class ConfigNetworking {
     // Client Identifiers
     public static final Identifier SYNC_CONFIG_C2S = new Identifier(Graves.MOD_ID, "sync_config_c2s");
     public static final Identifier STORE_CONFIG_C2S = new Identifier(Graves.MOD_ID, "store_config_c2s");
+    public static final Identifier ACK_CONFIG_C2S = new Identifier(Graves.MOD_ID, "ack_config_c2s");
 
     // Server Identifiers
     public static final Identifier REQUEST_CONFIG_S2C = new Identifier(Graves.MOD_ID, "request_config_c2s");
@@ -17,6 +18,7 @@ public class ConfigNetworking {
     public static final Identifier SET_CONFIG_S2C = new Identifier(Graves.MOD_ID, "set_config_s2c");
     public static final Identifier RESET_CONFIG_S2C = new Identifier(Graves.MOD_ID, "reset_config_s2c");
     public static final Identifier STORE_CONFIG_S2C = new Identifier(Graves.MOD_ID, "store_config_s2c");
+    public static final Identifier ACK_CONFIG_S2C = new Identifier(Graves.MOD_ID, "ack_config_s2c");
 
     /**
      * Registers Client-to-Server packet receivers
@@ -24,6 +26,7 @@ public class ConfigNetworking {
     public static void registerC2SPackets() {
         ServerPlayNetworking.registerGlobalReceiver(SYNC_CONFIG_C2S, SyncConfigC2SPacket::receive);
         ServerPlayNetworking.registerGlobalReceiver(STORE_CONFIG_C2S, StoreConfigC2SPacket::receive);
+        ServerPlayNetworking.registerGlobalReceiver(ACK_CONFIG_C2S, AckConfigC2SPacket::receive);
     }
 
     /**
@@ -35,5 +38,6 @@ public class ConfigNetworking {
         ClientPlayNetworking.registerGlobalReceiver(RESET_CONFIG_S2C, ResetClientConfigS2CPacket::receive);
         ClientPlayNetworking.registerGlobalReceiver(SET_CONFIG_S2C, SetClientConfigS2CPacket::receive);
         ClientPlayNetworking.registerGlobalReceiver(STORE_CONFIG_S2C, StoreConfigS2CPacket::receive);
+        ClientPlayNetworking.registerGlobalReceiver(ACK_CONFIG_S2C, AckConfigS2CPacket::receive);
     }
 }
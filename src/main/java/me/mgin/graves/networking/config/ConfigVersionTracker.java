@@ -0,0 +1,55 @@
+package me.mgin.graves.networking.config;
+
+import net.minecraft.network.PacketByteBuf;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Tracks the versions of a config that is being sent to one or more peers. Every change bumps the version, and
+ * the snapshots of versions still acknowledged by a peer are kept so that each peer only receives the options that
+ * changed since its acknowledged version.
+ */
+public class ConfigVersionTracker {
+    private final Map<Integer, Object[]> history = new HashMap<>();
+    private Object[] current = null;
+    private int version = 0;
+
+    /**
+     * Records the given config snapshot as the newest version if it differs from the current one.
+     *
+     * @param values Object[] from {@link me.mgin.graves.config.ConfigResolver#readAll}
+     */
+    public synchronized void publish(Object[] values) {
+        if (current != null && Arrays.equals(current, values)) return;
+
+        current = values;
+        history.put(++version, values);
+    }
+
+    public synchronized int getVersion() {
+        return version;
+    }
+
+    /**
+     * Writes the update a peer needs to reach the current version; the full config is written if the peer's
+     * acknowledged version is unknown.
+     *
+     * @param buf PacketByteBuf
+     * @param acknowledged int the last version the peer acknowledged (0 for none)
+     */
+    public synchronized void write(PacketByteBuf buf, int acknowledged) {
+        ConfigCodec.write(buf, acknowledged, version, history.get(acknowledged), current);
+    }
+
+    /**
+     * Forgets every version other than the current one and those still acknowledged by a peer.
+     *
+     * @param acknowledged {@code Collection<Integer>}
+     */
+    public synchronized void prune(Collection<Integer> acknowledged) {
+        history.keySet().removeIf(old -> old != version && !acknowledged.contains(old));
+    }
+}
@@ -1,13 +1,16 @@
 package me.mgin.graves.networking.config.event;
 
-import com.mojang.authlib.GameProfile;
-import me.mgin.graves.Graves;
+import me.mgin.graves.client.GravesClient;
 import me.mgin.graves.networking.config.ConfigNetworking;
+import me.mgin.graves.networking.config.ConfigVersionTracker;
+import me.mgin.graves.config.ClientConfigRegistry;
+import me.mgin.graves.config.ConfigResolver;
 import me.mgin.graves.config.GravesConfig;
 import me.shedaniel.autoconfig.AutoConfig;
 import net.fabricmc.api.EnvType;
 import net.fabricmc.fabric.api.client.networking.v1.ClientPlayConnectionEvents;
 import net.fabricmc.fabric.api.client.networking.v1.ClientPlayNetworking;
+import net.fabricmc.fabric.api.event.lifecycle.v1.ServerTickEvents;
 import net.fabricmc.fabric.api.networking.v1.PacketByteBufs;
 import net.fabricmc.fabric.api.networking.v1.ServerPlayConnectionEvents;
 import net.fabricmc.fabric.api.networking.v1.ServerPlayNetworking;
@@ -17,15 +20,31 @@ import net.minecraft.network.PacketByteBuf;
 import net.minecraft.server.network.ServerPlayerEntity;
 import net.minecraft.util.ActionResult;
 
-import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class ConfigNetworkingEvents {
     /**
      * This set is used to send every active player the server configuration
      * whenever it's saved or reloaded.
      */
-    private static Set<ServerPlayerEntity> listeners = new HashSet<>();
+    private static final Set<ServerPlayerEntity> listeners = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Versions of the server config sent to players, and the version each player last acknowledged; used to only
+     * send the options that changed.
+     */
+    private static final ConfigVersionTracker serverConfig = new ConfigVersionTracker();
+    private static final Map<UUID, Integer> serverConfigAcks = new ConcurrentHashMap<>();
+
+    /**
+     * Versions of the client config sent to the server, and the version the server last acknowledged.
+     */
+    private static final ConfigVersionTracker clientConfig = new ConfigVersionTracker();
+    private static int clientConfigAck = 0;
 
     /**
      * Registers client-side event handlers related to networking.
@@ -33,6 +52,10 @@ public class ConfigNetworkingEvents {
     static public void registerClientEvents() {
         // Join Dedicated Server
         ClientPlayConnectionEvents.JOIN.register((handler, sender, client) -> {
+            // A new server knows nothing of our config, nor we of theirs
+            clientConfigAck = 0;
+            GravesClient.SERVER_CONFIG_VERSION = 0;
+
             GravesConfig config = GravesConfig.getConfig();
             sendConfigC2S(config);
         });
@@ -58,15 +81,19 @@ public class ConfigNetworkingEvents {
         ServerPlayConnectionEvents.DISCONNECT.register((handler, server) -> {
             // Remove player from listeners
             listeners.remove(handler.player);
+            serverConfigAcks.remove(handler.player.getUuid());
 
             // Remove config
-            GameProfile profile = handler.player.getGameProfile();
-            Graves.clientConfigs.remove(profile);
+            ClientConfigRegistry.remove(handler.player.getUuid());
         });
 
+        // Apply the client config updates received during the tick
+        ServerTickEvents.END_SERVER_TICK.register(ClientConfigRegistry::applyPending);
+
         // Send player server config on join
         ServerPlayConnectionEvents.JOIN.register((handler, sender, server) -> {
             listeners.add(handler.player);
+            serverConfigAcks.put(handler.player.getUuid(), 0);
             sendConfigS2C(GravesConfig.getConfig(), handler.player);
         });
 
@@ -77,6 +104,7 @@ public class ConfigNetworkingEvents {
                 listeners.forEach((player) -> {
                     sendConfigS2C(config, player);
                 });
+                serverConfig.prune(serverConfigAcks.values());
                 return ActionResult.SUCCESS;
             });
 
@@ -85,6 +113,7 @@ public class ConfigNetworkingEvents {
                 listeners.forEach((player) -> {
                     sendConfigS2C(config, player);
                 });
+                serverConfig.prune(serverConfigAcks.values());
                 // Need to send config to all players
                 return ActionResult.SUCCESS;
             });
@@ -92,8 +121,9 @@ public class ConfigNetworkingEvents {
     }
 
     /**
-     * Transmits JSON-formatted config data to the (dedicated) server. The data will
-     * not be transmitted to integrated servers (single player).
+     * Transmits the client config to the (dedicated) server as a binary update containing only the options that
+     * changed since the version the server last acknowledged. The data will not be transmitted to integrated
+     * servers (single player).
      *
      * @param config GravesConfig
      */
@@ -105,22 +135,56 @@ public class ConfigNetworkingEvents {
             return;
         }
 
+        clientConfig.publish(ConfigResolver.readAll(config));
+        if (clientConfigAck == clientConfig.getVersion()) return;
+
         PacketByteBuf buf = PacketByteBufs.create();
-        buf.writeString(config.serialize());
+        clientConfig.write(buf, clientConfigAck);
         ClientPlayNetworking.send(ConfigNetworking.STORE_CONFIG_C2S, buf);
     }
 
     /**
-     * Transmits JSON-formatted config data to the client; this is currently only used by the
+     * Transmits the server config to the client as a binary update containing only the options that changed
+     * since the version the client last acknowledged; this is currently only used by the
      * {@link me.mgin.graves.mixin.ClientPlayerInteractionManagerMixin ClientPlayerInteractionManagerMixin}.
      *
      * @param config GravesConfig
      * @param player ServerPlayerEntity
      */
     private static void sendConfigS2C(GravesConfig config, ServerPlayerEntity player) {
+        serverConfig.publish(ConfigResolver.readAll(config));
+
+        int acknowledged = serverConfigAcks.getOrDefault(player.getUuid(), 0);
+        if (acknowledged == serverConfig.getVersion()) return;
+
         PacketByteBuf buf = PacketByteBufs.create();
-        buf.writeString(config.serialize());
+        serverConfig.write(buf, acknowledged);
         ServerPlayNetworking.send(player, ConfigNetworking.STORE_CONFIG_S2C, buf);
     }
 
+    /**
+     * Records the server config version a player has applied, resending if they are behind.
+     *
+     * @param player ServerPlayerEntity
+     * @param version int
+     */
+    public static void acknowledgeServerConfig(ServerPlayerEntity player, int version) {
+        if (!listeners.contains(player)) return;
+
+        serverConfigAcks.put(player.getUuid(), version);
+        serverConfig.prune(serverConfigAcks.values());
+        if (version != serverConfig.getVersion()) sendConfigS2C(GravesConfig.getConfig(), player);
+    }
+
+    /**
+     * Records the client config version the server has applied, resending if it is behind.
+     *
+     * @param version int
+     */
+    public static void acknowledgeClientConfig(int version) {
+        clientConfigAck = version;
+        clientConfig.prune(List.of(version));
+        if (version != clientConfig.getVersion()) sendConfigC2S(GravesConfig.getConfig());
+    }
+
 }
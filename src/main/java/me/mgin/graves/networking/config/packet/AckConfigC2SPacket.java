@@ -0,0 +1,16 @@
+package me.mgin.graves.networking.config.packet;
+
+import me.mgin.graves.networking.config.event.ConfigNetworkingEvents;
+import net.fabricmc.fabric.api.networking.v1.PacketSender;
+import net.minecraft.network.PacketByteBuf;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.server.network.ServerPlayNetworkHandler;
+import net.minecraft.server.network.ServerPlayerEntity;
+
+public class AckConfigC2SPacket {
+    public static void receive(MinecraftServer server, ServerPlayerEntity player, ServerPlayNetworkHandler handler,
+                               PacketByteBuf _buf, PacketSender sender) {
+        int version = _buf.readVarInt();
+        server.execute(() -> ConfigNetworkingEvents.acknowledgeServerConfig(player, version));
+    }
+}
@@ -0,0 +1,15 @@
+package me.mgin.graves.networking.config.packet;
+
+import me.mgin.graves.networking.config.event.ConfigNetworkingEvents;
+import net.fabricmc.fabric.api.networking.v1.PacketSender;
+import net.minecraft.client.MinecraftClient;
+import net.minecraft.client.network.ClientPlayNetworkHandler;
+import net.minecraft.network.PacketByteBuf;
+
+public class AckConfigS2CPacket {
+    public static void receive(MinecraftClient client, ClientPlayNetworkHandler handler, PacketByteBuf _buf,
+                               PacketSender sender) {
+        int version = _buf.readVarInt();
+        client.execute(() -> ConfigNetworkingEvents.acknowledgeClientConfig(version));
+    }
+}
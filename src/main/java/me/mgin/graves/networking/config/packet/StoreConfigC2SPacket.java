@@ -1,7 +1,7 @@
 package me.mgin.graves.networking.config.packet;
 
-import me.mgin.graves.Graves;
-import me.mgin.graves.config.GravesConfig;
+import me.mgin.graves.config.ClientConfigRegistry;
+import me.mgin.graves.networking.config.ConfigCodec;
 import net.fabricmc.fabric.api.networking.v1.PacketSender;
 import net.minecraft.network.PacketByteBuf;
 import net.minecraft.server.MinecraftServer;
@@ -11,7 +11,7 @@ import net.minecraft.server.network.ServerPlayerEntity;
 public class StoreConfigC2SPacket {
     public static void receive(MinecraftServer server, ServerPlayerEntity player, ServerPlayNetworkHandler handler,
                                PacketByteBuf _buf, PacketSender sender) {
-        GravesConfig config = GravesConfig.deserialize(_buf.readString());
-        Graves.clientConfigs.put(player.getGameProfile(), config);
+        ConfigCodec.ConfigUpdate update = ConfigCodec.read(_buf);
+        if (update != null) ClientConfigRegistry.submit(player, update);
     }
 }
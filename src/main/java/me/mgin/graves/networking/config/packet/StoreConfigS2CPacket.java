@@ -1,7 +1,10 @@
 package me.mgin.graves.networking.config.packet;
 
 import me.mgin.graves.client.GravesClient;
-import me.mgin.graves.config.GravesConfig;
+import me.mgin.graves.networking.config.ConfigCodec;
+import me.mgin.graves.networking.config.ConfigNetworking;
+import net.fabricmc.fabric.api.client.networking.v1.ClientPlayNetworking;
+import net.fabricmc.fabric.api.networking.v1.PacketByteBufs;
 import net.fabricmc.fabric.api.networking.v1.PacketSender;
 import net.minecraft.client.MinecraftClient;
 import net.minecraft.client.network.ClientPlayNetworkHandler;
@@ -10,7 +13,19 @@ import net.minecraft.network.PacketByteBuf;
 public class StoreConfigS2CPacket {
     public static void receive(MinecraftClient client, ClientPlayNetworkHandler handler, PacketByteBuf _buf,
                                PacketSender sender) {
-        GravesConfig config = GravesConfig.deserialize(_buf.readString());
-        GravesClient.SERVER_CONFIG = config;
+        ConfigCodec.ConfigUpdate update = ConfigCodec.read(_buf);
+        if (update == null) return;
+
+        client.execute(() -> {
+            // A delta against a version we don't have; acknowledging our version makes the server resend
+            if (update.isFull() || update.baseVersion() == GravesClient.SERVER_CONFIG_VERSION) {
+                GravesClient.SERVER_CONFIG = update.applyTo(GravesClient.SERVER_CONFIG);
+                GravesClient.SERVER_CONFIG_VERSION = update.version();
+            }
+
+            PacketByteBuf buf = PacketByteBufs.create();
+            buf.writeVarInt(GravesClient.SERVER_CONFIG_VERSION);
+            ClientPlayNetworking.send(ConfigNetworking.ACK_CONFIG_C2S, buf);
+        });
     }
 }
@@ -0,0 +1,320 @@
+package me.mgin.graves.state;
+
+import me.mgin.graves.Graves;
+import me.mgin.graves.versioned.VersionedCode;
+import net.minecraft.nbt.NbtCompound;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BooleanSupplier;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * An append-only log of changes made to stored graves. Events are buffered during the tick, written and fsync'd
+ * in batches on the {@link StorageWorker}, and replayed into the {@link ServerState} on startup. Whenever the server
+ * state is saved the journal is rolled over to a new segment and the segments covered by the save are deleted.
+ * <p>
+ * Each record is framed as {@code [int length][int crc32][body]}; a torn or corrupt record ends the replay.
+ */
+public class GraveJournal {
+    private static final byte CREATED = 1;
+    private static final byte RETRIEVED = 2;
+    private static final byte DELETED = 3;
+    private static final byte TRIMMED = 4;
+
+    private final Path directory;
+    private final StorageWorker worker;
+
+    private ByteArrayOutputStream pending = new ByteArrayOutputStream();
+    private final AtomicBoolean failed = new AtomicBoolean(false);
+    private int segment;
+    private FileChannel channel = null; // Only accessed by the worker
+
+    public GraveJournal(Path directory, StorageWorker worker) {
+        this.directory = directory.resolve("journal");
+        this.worker = worker;
+        this.segment = listSegments().stream().mapToInt(Integer::intValue).max().orElse(0) + 1;
+    }
+
+    // Events
+
+    public void created(UUID uuid, GraveRecord record, NbtCompound payload) {
+        append(CREATED, uuid, out -> {
+            // The payload is journaled too so the grave survives a crash before the payload store writes it
+            NbtCompound graveNbt = record.toNbt();
+            if (payload != null) payload.getKeys().forEach(key -> graveNbt.put(key, payload.get(key)));
+
+            out.writeInt(record.getId());
+            VersionedCode.writeNbt(graveNbt, out);
+        });
+    }
+
+    public void retrieved(UUID uuid, int graveId) {
+        append(RETRIEVED, uuid, out -> out.writeInt(graveId));
+    }
+
+    public void deleted(UUID uuid, int graveId) {
+        append(DELETED, uuid, out -> out.writeInt(graveId));
+    }
+
+    public void trimmed(UUID uuid, List<Integer> graveIds) {
+        if (graveIds.isEmpty()) return;
+
+        append(TRIMMED, uuid, out -> {
+            out.writeInt(graveIds.size());
+            for (int id : graveIds) out.writeInt(id);
+        });
+    }
+
+    /**
+     * Whether a batch failed to be written since this was last checked. Events of a failed batch are only durable
+     * once the server state has been saved.
+     *
+     * @return boolean
+     */
+    public boolean checkFailed() {
+        return failed.getAndSet(false);
+    }
+
+    /**
+     * Hands every event logged since the last flush to the worker, which appends and fsyncs them as a
+     * single batch. Called at the end of every server tick.
+     */
+    public void flush() {
+        if (pending.size() == 0) return;
+
+        byte[] batch = pending.toByteArray();
+        pending = new ByteArrayOutputStream();
+
+        worker.execute(() -> {
+            long start = -1;
+
+            try {
+                if (channel == null) {
+                    Files.createDirectories(directory);
+                    channel = FileChannel.open(getSegmentPath(segment), StandardOpenOption.CREATE,
+                        StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+                }
+
+                start = channel.size();
+                ByteBuffer buffer = ByteBuffer.wrap(batch);
+                while (buffer.hasRemaining()) channel.write(buffer);
+                channel.force(false);
+            } catch (IOException e) {
+                System.err.printf("[%s] Unable to write to the grave journal: %s\n", Graves.MOD_ID, e.getMessage());
+                failed.set(true);
+
+                // Cut off any partial record, as it would end the replay before the batches written after it
+                try {
+                    if (channel != null && start >= 0) channel.truncate(start);
+                } catch (IOException ignored) {
+                    // The next save compacts the segment either way
+                }
+
+                closeChannel();
+            }
+        });
+    }
+
+    /**
+     * Starts a new segment and, in the background, deletes every segment whose events are contained in the
+     * snapshot that was just saved. Segments are kept if the snapshot failed to write, or if a payload they carry
+     * has not been stored yet; the next compaction deletes them instead.
+     *
+     * @param snapshotWritten BooleanSupplier checked on the worker once the snapshot's write has run
+     */
+    public void compact(BooleanSupplier snapshotWritten) {
+        flush();
+
+        int compacted = segment++;
+
+        worker.execute(() -> {
+            closeChannel();
+            if (!snapshotWritten.getAsBoolean()) return;
+
+            for (int old : listSegments()) {
+                if (old > compacted) continue;
+
+                try {
+                    Files.deleteIfExists(getSegmentPath(old));
+                } catch (IOException e) {
+                    System.err.printf("[%s] Unable to compact the grave journal: %s\n", Graves.MOD_ID,
+                        e.getMessage());
+                }
+            }
+        });
+    }
+
+    /**
+     * Flushes any remaining events and closes the current segment.
+     */
+    public void close() {
+        flush();
+        worker.execute(this::closeChannel);
+    }
+
+    /**
+     * Applies every journaled event to the given state. Events are idempotent, so replaying events that are
+     * already part of the saved state is harmless. A segment that can't be read is set aside as
+     * {@code segment-<n>.log.failed} so compaction never deletes it.
+     *
+     * @param serverState ServerState
+     * @return int the number of events replayed
+     */
+    public int replay(ServerState serverState) {
+        int replayed = 0;
+
+        for (int index : listSegments()) {
+            try (DataInputStream input = new DataInputStream(new BufferedInputStream(
+                Files.newInputStream(getSegmentPath(index))))) {
+                while (true) {
+                    byte[] body = readRecord(input);
+                    if (body == null) break;
+
+                    applyRecord(serverState, new DataInputStream(new ByteArrayInputStream(body)));
+                    replayed++;
+                }
+            } catch (IOException e) {
+                System.err.printf("[%s] Unable to replay grave journal segment %d: %s\n", Graves.MOD_ID, index,
+                    e.getMessage());
+                setAside(index);
+            }
+        }
+
+        return replayed;
+    }
+
+    private void append(byte type, UUID uuid, RecordWriter writer) {
+        try {
+            ByteArrayOutputStream bodyBytes = new ByteArrayOutputStream();
+            DataOutputStream body = new DataOutputStream(bodyBytes);
+            body.writeByte(type);
+            body.writeLong(uuid.getMostSignificantBits());
+            body.writeLong(uuid.getLeastSignificantBits());
+            writer.write(body);
+
+            byte[] bytes = bodyBytes.toByteArray();
+            CRC32 crc = new CRC32();
+            crc.update(bytes);
+
+            DataOutputStream out = new DataOutputStream(pending);
+            out.writeInt(bytes.length);
+            out.writeInt((int) crc.getValue());
+            out.write(bytes);
+        } catch (IOException e) {
+            // Only thrown by in-memory streams if something has gone badly wrong
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static byte[] readRecord(DataInputStream input) throws IOException {
+        try {
+            int length = input.readInt();
+            int checksum = input.readInt();
+            if (length <= 0) return null;
+
+            byte[] body = new byte[length];
+            input.readFully(body);
+
+            CRC32 crc = new CRC32();
+            crc.update(body);
+            return (int) crc.getValue() == checksum ? body : null;
+        } catch (EOFException e) {
+            // The last record was only partially written
+            return null;
+        }
+    }
+
+    private static void applyRecord(ServerState serverState, DataInputStream body) throws IOException {
+        byte type = body.readByte();
+        UUID uuid = new UUID(body.readLong(), body.readLong());
+        PlayerState playerState = serverState.getOrLoadPlayerState(uuid);
+
+        switch (type) {
+            case CREATED -> {
+                int id = body.readInt();
+                playerState.restoreGrave(id, VersionedCode.readNbt(body));
+            }
+            case RETRIEVED -> {
+                GraveRecord record = playerState.getGrave(body.readInt());
+                if (record != null) record.setRetrieved(true);
+            }
+            case DELETED -> serverState.discardGrave(uuid, playerState.removeGrave(body.readInt()));
+            case TRIMMED -> {
+                int amount = body.readInt();
+                for (int i = 0; i < amount; i++) {
+                    serverState.discardGrave(uuid, playerState.removeGrave(body.readInt()));
+                }
+            }
+            default -> throw new IOException("Unknown journal event " + type);
+        }
+
+        serverState.markPlayerChanged(uuid);
+    }
+
+    private void setAside(int index) {
+        Path file = getSegmentPath(index);
+
+        try {
+            Files.move(file, file.resolveSibling(file.getFileName() + ".failed"),
+                StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            System.err.printf("[%s] Unable to set aside grave journal segment %d: %s\n", Graves.MOD_ID, index,
+                e.getMessage());
+        }
+    }
+
+    private void closeChannel() {
+        if (channel == null) return;
+
+        try {
+            channel.close();
+        } catch (IOException e) {
+            System.err.printf("[%s] Unable to close the grave journal: %s\n", Graves.MOD_ID, e.getMessage());
+        }
+
+        channel = null;
+    }
+
+    private List<Integer> listSegments() {
+        List<Integer> segments = new ArrayList<>();
+        if (!Files.isDirectory(directory)) return segments;
+
+        try (Stream<Path> files = Files.list(directory)) {
+            files.forEach(file -> {
+                String name = file.getFileName().toString();
+                if (!name.startsWith("segment-") || !name.endsWith(".log")) return;
+
+                try {
+                    segments.add(Integer.parseInt(name.substring(8, name.length() - 4)));
+                } catch (NumberFormatException ignored) {
+                    // Not a journal segment
+                }
+            });
+        } catch (IOException e) {
+            System.err.printf("[%s] Unable to list the grave journal: %s\n", Graves.MOD_ID, e.getMessage());
+        }
+
+        segments.sort(Integer::compare);
+        return segments;
+    }
+
+    private Path getSegmentPath(int index) {
+        return directory.resolve("segment-" + index + ".log");
+    }
+
+    @FunctionalInterface
+    private interface RecordWriter {
+        void write(DataOutputStream out) throws IOException;
+    }
+}
@@ -0,0 +1,250 @@
+package me.mgin.graves.state;
+
+import me.mgin.graves.Graves;
+import net.minecraft.nbt.NbtCompound;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Stores the payload of each grave backup in its own file, {@code payloads/<uuid>/<graveId>.dat}. Payloads never
+ * change once written, so each one is written exactly once on the {@link StorageWorker} and only read back when the
+ * grave is restored. Item stacks are kept in a per-player {@link GraveStackPool} so stacks shared between backups
+ * are only stored once.
+ * <p>
+ * Writes and deletes are collected during the tick and handed to the worker as one batch by {@link #flush()}, so
+ * each pool touched by the batch is written once. Within a batch the pool is written after payloads have been
+ * deleted and before new payloads are written; the pool reconciles itself with the payload files when it's loaded,
+ * so a crash between the two is harmless.
+ * <p>
+ * Loading a pool reconciles it with the player's payload files, which may read every one of them, so pools are only
+ * ever loaded on the worker; {@link #load(UUID)} is called as soon as a player's graves are loaded.
+ * <p>
+ * Until a payload has been stored, the journal event that created its grave holds its only durable copy; the store
+ * keeps track of those payloads so the journal isn't compacted before they have been written.
+ */
+public class GravePayloadStore {
+    private final Path directory;
+    private final StorageWorker worker;
+    private final Map<UUID, CompletableFuture<GraveStackPool>> pools = new ConcurrentHashMap<>();
+    private final Set<GraveRecord> unstored = ConcurrentHashMap.newKeySet();
+    private final Queue<PendingWrite> failedWrites = new ConcurrentLinkedQueue<>();
+    private List<PendingWrite> writes = new ArrayList<>();
+    private List<PendingDelete> deletes = new ArrayList<>();
+
+    public GravePayloadStore(Path directory, StorageWorker worker) {
+        this.directory = directory.resolve("payloads");
+        this.worker = worker;
+    }
+
+    /**
+     * Loads the player's item pool on the worker, unless it has been loaded already.
+     *
+     * @param uuid UUID of the grave owner
+     */
+    public void load(UUID uuid) {
+        requestPool(uuid);
+    }
+
+    /**
+     * Queues the grave's payload to be written with the next batch if it has not been written yet; the record keeps
+     * the payload in memory until the write has finished.
+     *
+     * @param uuid UUID of the grave owner
+     * @param record GraveRecord
+     */
+    public void write(UUID uuid, GraveRecord record) {
+        NbtCompound payload = record.getPendingPayload();
+        if (payload == null) return;
+
+        writes.add(new PendingWrite(uuid, record, payload));
+        unstored.add(record);
+    }
+
+    /**
+     * Queues the writes that failed since the last retry to be written with the next batch; graves deleted since
+     * then are skipped.
+     */
+    public void retryFailedWrites() {
+        PendingWrite write;
+        while ((write = failedWrites.poll()) != null) {
+            if (unstored.contains(write.record())) writes.add(write);
+        }
+    }
+
+    /**
+     * Get every grave whose payload has not been stored yet.
+     *
+     * @return {@code List<GraveRecord>}
+     */
+    public List<GraveRecord> getUnstored() {
+        return List.copyOf(unstored);
+    }
+
+    /**
+     * Whether the grave's payload has been stored, or no longer needs to be as the grave was deleted; safe to call
+     * from the storage worker.
+     *
+     * @param record GraveRecord
+     * @return boolean
+     */
+    public boolean isStored(GraveRecord record) {
+        return !unstored.contains(record);
+    }
+
+    /**
+     * Reads the grave's payload, preferring the in-memory copy if it has not been written yet. Stacks are resolved
+     * against the pool loaded by the worker; should it not have finished loading yet, this waits for it.
+     *
+     * @param uuid UUID of the grave owner
+     * @param record GraveRecord
+     * @return NbtCompound or null if the payload could not be read
+     */
+    public NbtCompound read(UUID uuid, GraveRecord record) {
+        NbtCompound payload = record.getPendingPayload();
+        if (payload != null) return payload;
+
+        Path file = getPayloadPath(uuid, record.getId());
+
+        try {
+            NbtCompound stored = PlayerStateStorage.readCompressed(file);
+            return requestPool(uuid).join().resolve(stored);
+        } catch (IOException | CompletionException e) {
+            System.err.printf("[%s] Unable to read grave %d for %s: %s\n", Graves.MOD_ID, record.getId(), uuid,
+                e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Queues the grave's payload to be deleted with the next batch, releasing its stacks from the pool.
+     *
+     * @param uuid UUID of the grave owner
+     * @param record GraveRecord
+     */
+    public void delete(UUID uuid, GraveRecord record) {
+        deletes.add(new PendingDelete(uuid, record.getId()));
+        unstored.remove(record);
+    }
+
+    /**
+     * Hands the writes and deletes queued since the last flush to the worker as one batch. Called at the end of
+     * every server tick, after the journal has been flushed.
+     */
+    public void flush() {
+        if (writes.isEmpty() && deletes.isEmpty()) return;
+
+        // Graves deleted during the same tick they were written in never need their payload written
+        List<PendingDelete> batchDeletes = deletes;
+        Set<PendingDelete> deleted = new HashSet<>(batchDeletes);
+        List<PendingWrite> batchWrites = writes.stream()
+            .filter(write -> !deleted.contains(new PendingDelete(write.uuid(), write.record().getId())))
+            .toList();
+        writes = new ArrayList<>();
+        deletes = new ArrayList<>();
+
+        worker.execute(() -> {
+            Set<UUID> touched = new HashSet<>();
+
+            for (PendingDelete delete : batchDeletes) {
+                try {
+                    Files.deleteIfExists(getPayloadPath(delete.uuid(), delete.graveId()));
+                    getPool(delete.uuid()).release(delete.graveId());
+                    touched.add(delete.uuid());
+                } catch (IOException e) {
+                    System.err.printf("[%s] Unable to delete grave %d for %s: %s\n", Graves.MOD_ID,
+                        delete.graveId(), delete.uuid(), e.getMessage());
+                }
+            }
+
+            // Replaying the journal can write a payload again; pooling it releases the stacks of the old copy
+            List<NbtCompound> pooled = new ArrayList<>(batchWrites.size());
+            for (PendingWrite write : batchWrites) {
+                pooled.add(getPool(write.uuid()).pool(write.record().getId(), write.payload()));
+                touched.add(write.uuid());
+            }
+
+            Set<UUID> failedPools = new HashSet<>();
+            for (UUID uuid : touched) {
+                try {
+                    getPool(uuid).save();
+                } catch (IOException e) {
+                    System.err.printf("[%s] Unable to save the grave item pool for %s: %s\n", Graves.MOD_ID, uuid,
+                        e.getMessage());
+                    failedPools.add(uuid);
+                }
+            }
+
+            for (int i = 0; i < batchWrites.size(); i++) {
+                PendingWrite write = batchWrites.get(i);
+                GraveRecord record = write.record();
+
+                // Without its stacks on disk the payload couldn't be read back, so it's kept in memory instead
+                if (failedPools.contains(write.uuid())) {
+                    failedWrites.add(write);
+                    continue;
+                }
+
+                try {
+                    Path file = getPayloadPath(write.uuid(), record.getId());
+                    Files.createDirectories(file.getParent());
+                    PlayerStateStorage.writeCompressed(pooled.get(i), file);
+                    record.payloadStored(write.payload());
+                    unstored.remove(record);
+                } catch (IOException e) {
+                    System.err.printf("[%s] Unable to save grave %d for %s: %s\n", Graves.MOD_ID, record.getId(),
+                        write.uuid(), e.getMessage());
+                    failedWrites.add(write);
+                }
+            }
+        });
+    }
+
+    /**
+     * Get the player's pool, queueing it to be loaded on the worker if it hasn't been yet.
+     */
+    private CompletableFuture<GraveStackPool> requestPool(UUID uuid) {
+        return pools.computeIfAbsent(uuid, key -> {
+            CompletableFuture<GraveStackPool> pool = new CompletableFuture<>();
+            worker.execute(() -> loadPool(key, pool));
+            return pool;
+        });
+    }
+
+    /**
+     * Get the player's pool from the worker, loading it right away if its queued load hasn't run yet.
+     */
+    private GraveStackPool getPool(UUID uuid) {
+        return loadPool(uuid, pools.computeIfAbsent(uuid, key -> new CompletableFuture<>()));
+    }
+
+    private GraveStackPool loadPool(UUID uuid, CompletableFuture<GraveStackPool> pool) {
+        if (!pool.isDone()) {
+            try {
+                pool.complete(GraveStackPool.load(directory.resolve(uuid.toString())));
+            } catch (RuntimeException e) {
+                // Anyone waiting on the pool would otherwise wait forever
+                pool.completeExceptionally(e);
+                throw e;
+            }
+        }
+
+        return pool.join();
+    }
+
+    private Path getPayloadPath(UUID uuid, int graveId) {
+        return directory.resolve(uuid.toString()).resolve(graveId + ".dat");
+    }
+
+    private record PendingWrite(UUID uuid, GraveRecord record, NbtCompound payload) {
+    }
+
+    private record PendingDelete(UUID uuid, int graveId) {
+    }
+}
@@ -0,0 +1,110 @@
+package me.mgin.graves.state;
+
+import me.mgin.graves.util.NbtHelper;
+import net.minecraft.nbt.NbtCompound;
+import net.minecraft.util.math.BlockPos;
+
+import java.util.Set;
+
+/**
+ * A single stored grave backup. Only the summary (coordinates, dimension, creation time and retrieved flag) is kept
+ * in memory; the payload (inventories, XP, skull, owner, etc.) lives in the {@link GravePayloadStore} and is only
+ * read when the grave is restored.
+ */
+public class GraveRecord {
+    // Every other key in a grave's NBT belongs to the payload
+    private static final Set<String> SUMMARY_KEYS = Set.of("graveId", "mstime", "x", "y", "z", "dimension",
+        "retrieved");
+
+    private final int id;
+    private final long mstime;
+    private final BlockPos pos;
+    private final String dimension;
+    private boolean retrieved;
+    private volatile NbtCompound payload; // Only held until the payload store has written it
+
+    public GraveRecord(int id, NbtCompound nbt) {
+        this.id = id;
+        this.mstime = nbt.getLong("mstime");
+        this.pos = NbtHelper.readCoordinates(nbt);
+        this.dimension = nbt.getString("dimension");
+        this.retrieved = nbt.getBoolean("retrieved");
+
+        // Older saves and journaled graves carry their payload inline
+        NbtCompound payload = new NbtCompound();
+        for (String key : nbt.getKeys()) {
+            if (!SUMMARY_KEYS.contains(key)) payload.put(key, nbt.get(key));
+        }
+
+        this.payload = payload.isEmpty() ? null : payload;
+    }
+
+    /**
+     * Get the stable id of the grave; this never changes once the grave is stored.
+     *
+     * @return int
+     */
+    public int getId() {
+        return id;
+    }
+
+    /**
+     * Get the time the grave was made (in milliseconds)
+     *
+     * @return long
+     */
+    public long getMstime() {
+        return mstime;
+    }
+
+    public BlockPos getPos() {
+        return pos;
+    }
+
+    public String getDimension() {
+        return dimension;
+    }
+
+    public boolean isRetrieved() {
+        return retrieved;
+    }
+
+    public void setRetrieved(boolean retrieved) {
+        this.retrieved = retrieved;
+    }
+
+    /**
+     * Get the payload if it has not been written to the payload store yet.
+     *
+     * @return NbtCompound or null
+     */
+    NbtCompound getPendingPayload() {
+        return payload;
+    }
+
+    /**
+     * Releases the payload once the payload store has written it; called from the storage worker.
+     *
+     * @param stored NbtCompound the payload that was written
+     */
+    void payloadStored(NbtCompound stored) {
+        if (payload == stored) payload = null;
+    }
+
+    /**
+     * Writes the grave's summary; this contains its coordinates, dimension, creation time, retrieved flag, and id.
+     *
+     * @return NbtCompound
+     */
+    public NbtCompound toNbt() {
+        NbtCompound nbt = new NbtCompound();
+        nbt.putInt("graveId", id);
+        nbt.putLong("mstime", mstime);
+        nbt.putInt("x", pos.getX());
+        nbt.putInt("y", pos.getY());
+        nbt.putInt("z", pos.getZ());
+        nbt.putString("dimension", dimension);
+        nbt.putBoolean("retrieved", retrieved);
+        return nbt;
+    }
+}
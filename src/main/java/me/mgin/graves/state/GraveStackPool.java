@@ -0,0 +1,345 @@
+package me.mgin.graves.state;
+
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.ints.IntOpenHashSet;
+import it.unimi.dsi.fastutil.ints.IntSet;
+import me.mgin.graves.Graves;
+import me.mgin.graves.util.NbtHelper;
+import net.minecraft.nbt.NbtCompound;
+import net.minecraft.nbt.NbtElement;
+import net.minecraft.nbt.NbtList;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * A content-addressed pool of the item stacks found in one player's grave payloads. Identical stacks (item, count
+ * and NBT) are stored once and referenced by id from every payload containing them; a stack is dropped once no
+ * payload references it anymore.
+ * <p>
+ * The pool records which stacks each grave references, so releasing a grave never has to read its payload back, and
+ * reference counts are derived from those lists rather than stored. When the pool is loaded it is reconciled with
+ * the payload files on disk: graves whose payload was never written or was already deleted are dropped, and payloads
+ * the pool doesn't know about are read in. A crash between writing the pool and writing or deleting a payload
+ * therefore never leaks or loses stacks.
+ * <p>
+ * The pool is loaded and written by the storage worker, and read by restores on the server thread, hence the
+ * synchronization.
+ */
+class GraveStackPool {
+    private static final String FILE_NAME = "stacks.dat";
+
+    private final Path directory;
+    private final Map<NbtCompound, Integer> ids = new HashMap<>();
+    private final Map<Integer, NbtCompound> stacks = new HashMap<>();
+    private final Map<Integer, Integer> refs = new HashMap<>();
+    private final Map<Integer, int[]> graves = new HashMap<>();
+    private int nextId = 1;
+    private boolean dirty = false;
+
+    private GraveStackPool(Path directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * Loads the pool of the given payload directory, or creates an empty pool if there is none, and reconciles it
+     * with the payloads in the directory. Only called on the storage worker.
+     *
+     * @param directory Path
+     * @return GraveStackPool
+     */
+    static GraveStackPool load(Path directory) {
+        GraveStackPool pool = new GraveStackPool(directory);
+        Path file = directory.resolve(FILE_NAME);
+
+        if (Files.exists(file)) {
+            try {
+                NbtCompound nbt = PlayerStateStorage.readCompressed(file);
+                NbtList stacksNbt = nbt.getList("stacks", NbtElement.COMPOUND_TYPE);
+                NbtList gravesNbt = nbt.getList("graves", NbtElement.COMPOUND_TYPE);
+                pool.nextId = Math.max(nbt.getInt("nextId"), 1);
+
+                for (int i = 0; i < stacksNbt.size(); i++) {
+                    NbtCompound entry = stacksNbt.getCompound(i);
+                    int id = entry.getInt("Id");
+                    NbtCompound stack = entry.getCompound("Stack");
+
+                    pool.ids.put(stack, id);
+                    pool.stacks.put(id, stack);
+                }
+
+                for (int i = 0; i < gravesNbt.size(); i++) {
+                    NbtCompound entry = gravesNbt.getCompound(i);
+                    pool.graves.put(entry.getInt("Id"), entry.getIntArray("Stacks"));
+                }
+            } catch (IOException e) {
+                System.err.printf("[%s] Unable to read grave item pool %s: %s\n", Graves.MOD_ID, file,
+                    e.getMessage());
+            }
+        }
+
+        pool.reconcile();
+        return pool;
+    }
+
+    /**
+     * Replaces every stack in the grave's payload with a reference into the pool; any stacks the grave referenced
+     * before are released. The given payload is left untouched; a new compound is returned.
+     *
+     * @param graveId int
+     * @param payload NbtCompound
+     * @return NbtCompound
+     */
+    synchronized NbtCompound pool(int graveId, NbtCompound payload) {
+        release(graveId);
+
+        IntArrayList referenced = new IntArrayList();
+        NbtCompound stored = transformInventories(payload, stack -> {
+            Integer id = ids.get(stack);
+
+            if (id == null) {
+                id = nextId++;
+                NbtCompound key = stack.copy();
+                ids.put(key, id);
+                stacks.put(id, key);
+            }
+
+            referenced.add((int) id);
+
+            NbtCompound reference = new NbtCompound();
+            reference.putInt("Stack", id);
+            return reference;
+        });
+
+        reference(graveId, referenced.toIntArray());
+        return stored;
+    }
+
+    /**
+     * Replaces every stack reference in a stored payload with the stack it refers to.
+     *
+     * @param stored NbtCompound
+     * @return NbtCompound
+     */
+    synchronized NbtCompound resolve(NbtCompound stored) {
+        return transformInventories(stored, entry -> {
+            // Payloads written before pooling hold their stacks inline
+            if (!entry.contains("Stack")) return entry;
+
+            NbtCompound stack = stacks.get(entry.getInt("Stack"));
+            return stack != null ? stack.copy() : null;
+        });
+    }
+
+    /**
+     * Releases every stack referenced by a grave that is being deleted or replaced.
+     *
+     * @param graveId int
+     */
+    synchronized void release(int graveId) {
+        int[] referenced = graves.remove(graveId);
+        if (referenced == null) return;
+
+        for (int id : referenced) {
+            int remaining = refs.getOrDefault(id, 0) - 1;
+
+            if (remaining > 0) {
+                refs.put(id, remaining);
+            } else {
+                refs.remove(id);
+                NbtCompound stack = stacks.remove(id);
+                if (stack != null) ids.remove(stack);
+            }
+        }
+
+        dirty = true;
+    }
+
+    /**
+     * Writes the pool if it changed since it was last written; an empty pool deletes its file.
+     */
+    synchronized void save() throws IOException {
+        if (!dirty) return;
+
+        Path file = directory.resolve(FILE_NAME);
+
+        if (stacks.isEmpty() && graves.isEmpty()) {
+            Files.deleteIfExists(file);
+        } else {
+            NbtList stacksNbt = new NbtList();
+            stacks.forEach((id, stack) -> {
+                NbtCompound entry = new NbtCompound();
+                entry.putInt("Id", id);
+                entry.put("Stack", stack);
+                stacksNbt.add(entry);
+            });
+
+            NbtList gravesNbt = new NbtList();
+            graves.forEach((id, referenced) -> {
+                NbtCompound entry = new NbtCompound();
+                entry.putInt("Id", id);
+                entry.putIntArray("Stacks", referenced);
+                gravesNbt.add(entry);
+            });
+
+            NbtCompound nbt = new NbtCompound();
+            nbt.put("stacks", stacksNbt);
+            nbt.put("graves", gravesNbt);
+            nbt.putInt("nextId", nextId);
+
+            Files.createDirectories(directory);
+            PlayerStateStorage.writeCompressed(nbt, file);
+        }
+
+        dirty = false;
+    }
+
+    private void reference(int graveId, int[] referenced) {
+        graves.put(graveId, referenced);
+        for (int id : referenced) refs.merge(id, 1, Integer::sum);
+        dirty = true;
+    }
+
+    /**
+     * Matches the graves of the pool to the payload files on disk and rebuilds the reference counts from them.
+     */
+    private void reconcile() {
+        IntSet stored = new IntOpenHashSet();
+
+        if (Files.isDirectory(directory)) {
+            try (Stream<Path> files = Files.list(directory)) {
+                files.forEach(file -> {
+                    String name = file.getFileName().toString();
+                    if (name.equals(FILE_NAME) || !name.endsWith(".dat")) return;
+
+                    try {
+                        stored.add(Integer.parseInt(name.substring(0, name.length() - 4)));
+                    } catch (NumberFormatException ignored) {
+                        // Not a payload
+                    }
+                });
+            } catch (IOException e) {
+                System.err.printf("[%s] Unable to list grave payloads %s: %s\n", Graves.MOD_ID, directory,
+                    e.getMessage());
+                return;
+            }
+        }
+
+        // Graves whose payload was deleted, or never written, no longer hold their stacks
+        if (graves.keySet().removeIf(graveId -> !stored.contains((int) graveId))) dirty = true;
+
+        // Pools written before graves were tracked, or not saved after a payload was written
+        for (int graveId : stored) {
+            if (graves.containsKey(graveId)) continue;
+
+            try {
+                IntArrayList referenced = new IntArrayList();
+                transformInventories(PlayerStateStorage.readCompressed(directory.resolve(graveId + ".dat")),
+                    entry -> {
+                        if (entry.contains("Stack")) referenced.add(entry.getInt("Stack"));
+                        return entry;
+                    });
+
+                graves.put(graveId, referenced.toIntArray());
+                dirty = true;
+            } catch (IOException e) {
+                System.err.printf("[%s] Unable to read grave payload %s: %s\n", Graves.MOD_ID, graveId,
+                    e.getMessage());
+            }
+        }
+
+        refs.clear();
+        graves.values().forEach(referenced -> {
+            for (int id : referenced) refs.merge(id, 1, Integer::sum);
+        });
+
+        // Stacks no grave references anymore
+        if (stacks.keySet().removeIf(id -> !refs.containsKey(id))) {
+            ids.values().removeIf(id -> !stacks.containsKey(id));
+            dirty = true;
+        }
+    }
+
+    /**
+     * Copies the payload, passing every stack of every inventory through the given transformer; stacks the
+     * transformer returns null for are dropped. Inventories are either in the compact inventory format, or listed in
+     * the payload's {@code ItemCount} as in payloads written before it.
+     */
+    private static NbtCompound transformInventories(NbtCompound payload, StackTransformer transformer) {
+        NbtCompound result = payload.copy();
+        NbtCompound itemCount = payload.getCompound("ItemCount");
+
+        for (String key : payload.getKeys()) {
+            if (!payload.contains(key, NbtElement.COMPOUND_TYPE)) continue;
+            NbtCompound inventory = payload.getCompound(key);
+
+            if (NbtHelper.isCompactInventory(inventory)) {
+                result.put(key, transformCompact(inventory, transformer));
+            } else if (itemCount.contains(key)) {
+                result.getCompound(key).put("Items", transformSlotted(inventory, transformer));
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Transforms the stacks of a compact inventory; the slots of dropped stacks are cleared from its bitmap.
+     */
+    private static NbtCompound transformCompact(NbtCompound inventory, StackTransformer transformer) {
+        NbtCompound result = inventory.copy();
+        NbtList items = inventory.getList("Stacks", NbtElement.COMPOUND_TYPE);
+        long[] slots = inventory.getLongArray("Slots").clone();
+        NbtList transformed = new NbtList();
+        int next = 0;
+
+        for (int word = 0; word < slots.length; word++) {
+            for (long bits = slots[word]; bits != 0; bits &= bits - 1) {
+                long bit = Long.lowestOneBit(bits);
+                NbtCompound entry = null;
+                if (next < items.size()) entry = transformer.transform(items.getCompound(next++).copy());
+
+                if (entry != null) {
+                    transformed.add(entry);
+                } else {
+                    slots[word] &= ~bit;
+                }
+            }
+        }
+
+        result.putLongArray("Slots", slots);
+        result.put("Stacks", transformed);
+        return result;
+    }
+
+    /**
+     * Transforms the stacks of an inventory whose stacks each hold their slot.
+     */
+    private static NbtList transformSlotted(NbtCompound inventory, StackTransformer transformer) {
+        NbtList items = inventory.getList("Items", NbtElement.COMPOUND_TYPE);
+        NbtList transformed = new NbtList();
+
+        for (int i = 0; i < items.size(); i++) {
+            NbtCompound stack = items.getCompound(i).copy();
+            byte slot = stack.getByte("Slot");
+            stack.remove("Slot");
+
+            NbtCompound entry = transformer.transform(stack);
+            if (entry == null) continue;
+
+            entry.putByte("Slot", slot);
+            transformed.add(entry);
+        }
+
+        return transformed;
+    }
+
+    @FunctionalInterface
+    private interface StackTransformer {
+        NbtCompound transform(NbtCompound stack);
+    }
+}
@@ -1,7 +1,174 @@
 package me.mgin.graves.state;
 
+import net.minecraft.nbt.NbtCompound;
+import net.minecraft.nbt.NbtElement;
 import net.minecraft.nbt.NbtList;
+import net.minecraft.util.math.BlockPos;
+
+import java.util.*;
 
 public class PlayerState {
-    public NbtList graves = new NbtList();
+    // Ids are handed out in the order graves are made, so ordering by id orders them from oldest to newest
+    private final TreeMap<Integer, GraveRecord> graves = new TreeMap<>();
+    // Graves made in the same millisecond (e.g. several deaths during one tick) share an mstime
+    private final Map<Long, List<GraveRecord>> gravesByMstime = new HashMap<>();
+    private int nextGraveId = 1;
+
+    /**
+     * Stores the given grave NBT as the newest grave and assigns it a stable id.
+     *
+     * @param nbt NbtCompound
+     * @return GraveRecord
+     */
+    public GraveRecord addGrave(NbtCompound nbt) {
+        GraveRecord record = new GraveRecord(nextGraveId++, nbt);
+        index(record);
+        return record;
+    }
+
+    /**
+     * Stores the given grave NBT under an existing id; used when replaying journaled graves. A grave already stored
+     * under the id is replaced, as its payload may not have reached the payload store.
+     *
+     * @param id int
+     * @param nbt NbtCompound
+     */
+    public void restoreGrave(int id, NbtCompound nbt) {
+        index(new GraveRecord(id, nbt));
+        nextGraveId = Math.max(nextGraveId, id + 1);
+    }
+
+    /**
+     * Get a grave by its stable id.
+     *
+     * @param id int
+     * @return GraveRecord or null
+     */
+    public GraveRecord getGrave(int id) {
+        return graves.get(id);
+    }
+
+    /**
+     * Get an unmodifiable view of every stored grave, ordered from oldest to newest.
+     *
+     * @return {@code Collection<GraveRecord>}
+     */
+    public Collection<GraveRecord> getGraves() {
+        return Collections.unmodifiableCollection(graves.values());
+    }
+
+    /**
+     * Get the position of the grave within the stored graves, counted from the oldest. Only used to display
+     * graves in commands.
+     *
+     * @param record GraveRecord
+     * @return int (-1 if not stored)
+     */
+    public int indexOf(GraveRecord record) {
+        if (graves.get(record.getId()) != record) return -1;
+
+        return graves.headMap(record.getId()).size();
+    }
+
+    public int getGraveCount() {
+        return graves.size();
+    }
+
+    /**
+     * Marks the grave created at the given time as retrieved; graves sharing the time are told apart by their
+     * position.
+     *
+     * @param mstime long
+     * @param pos BlockPos
+     * @return GraveRecord the updated grave, or null
+     */
+    public GraveRecord markRetrieved(long mstime, BlockPos pos) {
+        List<GraveRecord> records = gravesByMstime.get(mstime);
+        if (records == null) return null;
+
+        for (GraveRecord record : records) {
+            if (record.getPos().equals(pos)) {
+                record.setRetrieved(true);
+                return record;
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Removes a grave by its stable id.
+     *
+     * @param id int
+     * @return GraveRecord the removed grave, or null
+     */
+    public GraveRecord removeGrave(int id) {
+        GraveRecord record = graves.remove(id);
+        if (record == null) return null;
+
+        unindexMstime(record);
+        return record;
+    }
+
+    /**
+     * Removes the given amount of graves, starting with the oldest.
+     *
+     * @param amount int
+     * @return {@code List<GraveRecord>} the removed graves
+     */
+    public List<GraveRecord> removeOldestGraves(int amount) {
+        List<GraveRecord> removed = new ArrayList<>(Math.min(amount, graves.size()));
+
+        while (removed.size() < amount && !graves.isEmpty()) {
+            GraveRecord record = graves.pollFirstEntry().getValue();
+            unindexMstime(record);
+            removed.add(record);
+        }
+
+        return removed;
+    }
+
+    private void index(GraveRecord record) {
+        GraveRecord replaced = graves.put(record.getId(), record);
+        if (replaced != null) unindexMstime(replaced);
+
+        gravesByMstime.computeIfAbsent(record.getMstime(), mstime -> new ArrayList<>(1)).add(record);
+    }
+
+    private void unindexMstime(GraveRecord record) {
+        List<GraveRecord> records = gravesByMstime.get(record.getMstime());
+        if (records == null) return;
+
+        records.remove(record);
+        if (records.isEmpty()) gravesByMstime.remove(record.getMstime());
+    }
+
+    public NbtCompound writeNbt(NbtCompound nbt) {
+        NbtList gravesNbt = new NbtList();
+        for (GraveRecord record : graves.values()) {
+            gravesNbt.add(record.toNbt());
+        }
+
+        nbt.put("graves", gravesNbt);
+        nbt.putInt("nextGraveId", nextGraveId);
+        return nbt;
+    }
+
+    public static PlayerState fromNbt(NbtCompound nbt) {
+        PlayerState playerState = new PlayerState();
+        NbtList gravesNbt = nbt.getList("graves", NbtElement.COMPOUND_TYPE);
+        playerState.nextGraveId = Math.max(nbt.getInt("nextGraveId"), 1);
+
+        for (int i = 0; i < gravesNbt.size(); i++) {
+            NbtCompound graveNbt = gravesNbt.getCompound(i);
+
+            // Older states did not store an id; these are given ids in the order they were stored.
+            int id = graveNbt.contains("graveId") ? graveNbt.getInt("graveId") : playerState.nextGraveId;
+            playerState.nextGraveId = Math.max(playerState.nextGraveId, id + 1);
+
+            playerState.index(new GraveRecord(id, graveNbt));
+        }
+
+        return playerState;
+    }
 }
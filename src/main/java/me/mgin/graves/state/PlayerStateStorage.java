@@ -0,0 +1,138 @@
+package me.mgin.graves.state;
+
+import me.mgin.graves.Graves;
+import me.mgin.graves.versioned.VersionedCode;
+import net.minecraft.nbt.NbtCompound;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.util.WorldSavePath;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.UUID;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Reads and writes per-player grave shards; each player's state is stored in its own file so that only players
+ * whose graves changed have to be rewritten.
+ */
+public class PlayerStateStorage {
+    private static final String EXTENSION = ".dat";
+    private final Path directory;
+
+    public PlayerStateStorage(MinecraftServer server) {
+        this.directory = server.getSavePath(WorldSavePath.ROOT).resolve("data").resolve(Graves.MOD_ID);
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+    /**
+     * Loads the shard for the given player.
+     *
+     * @param uuid UUID
+     * @return PlayerState or null if the player has no shard
+     */
+    public PlayerState load(UUID uuid) {
+        Path file = getShardPath(uuid);
+        if (!Files.exists(file)) return null;
+
+        try {
+            return PlayerState.fromNbt(readCompressed(file));
+        } catch (IOException e) {
+            System.err.printf("[%s] Unable to read grave data for %s: %s\n", Graves.MOD_ID, uuid, e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Writes the shard for the given player; the previous shard is left untouched if the write fails.
+     *
+     * @param uuid UUID
+     * @param playerState PlayerState
+     */
+    public void save(UUID uuid, PlayerState playerState) throws IOException {
+        write(uuid, playerState.writeNbt(new NbtCompound()));
+    }
+
+    /**
+     * Writes an already serialized shard for the given player.
+     *
+     * @param uuid UUID
+     * @param nbt NbtCompound
+     */
+    public void write(UUID uuid, NbtCompound nbt) throws IOException {
+        Files.createDirectories(directory);
+        writeCompressed(nbt, getShardPath(uuid));
+    }
+
+    public void delete(UUID uuid) {
+        try {
+            Files.deleteIfExists(getShardPath(uuid));
+        } catch (IOException e) {
+            System.err.printf("[%s] Unable to delete grave data for %s: %s\n", Graves.MOD_ID, uuid, e.getMessage());
+        }
+    }
+
+    /**
+     * Lists every player that has a shard on disk.
+     *
+     * @return {@code Set<UUID>}
+     */
+    public Set<UUID> listPlayers() {
+        Set<UUID> players = new HashSet<>();
+        if (!Files.isDirectory(directory)) return players;
+
+        try (Stream<Path> files = Files.list(directory)) {
+            files.forEach(file -> {
+                String name = file.getFileName().toString();
+                if (!name.endsWith(EXTENSION)) return;
+
+                try {
+                    players.add(UUID.fromString(name.substring(0, name.length() - EXTENSION.length())));
+                } catch (IllegalArgumentException ignored) {
+                    // Not a player shard
+                }
+            });
+        } catch (IOException e) {
+            System.err.printf("[%s] Unable to list grave data: %s\n", Graves.MOD_ID, e.getMessage());
+        }
+
+        return players;
+    }
+
+    private Path getShardPath(UUID uuid) {
+        return directory.resolve(uuid + EXTENSION);
+    }
+
+    public static NbtCompound readCompressed(Path file) throws IOException {
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(
+            new GZIPInputStream(Files.newInputStream(file))))) {
+            return VersionedCode.readNbt(input);
+        }
+    }
+
+    /**
+     * Writes the compressed NBT to a temporary file and moves it over the target, so a crash mid-write never
+     * leaves a truncated file behind.
+     *
+     * @param nbt NbtCompound
+     * @param file Path
+     */
+    public static void writeCompressed(NbtCompound nbt, Path file) throws IOException {
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+
+        try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(
+            new GZIPOutputStream(Files.newOutputStream(temp))))) {
+            VersionedCode.writeNbt(nbt, output);
+        }
+
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+}
@@ -3,21 +3,32 @@ package me.mgin.graves.state;
 import me.mgin.graves.Graves;
 import me.mgin.graves.block.entity.GraveBlockEntity;
 import me.mgin.graves.config.GravesConfig;
+import me.mgin.graves.util.NbtHelper;
 import net.minecraft.entity.player.PlayerEntity;
 import net.minecraft.nbt.NbtCompound;
-import net.minecraft.nbt.NbtList;
 import net.minecraft.server.MinecraftServer;
+import net.minecraft.util.WorldSavePath;
 import net.minecraft.util.math.BlockPos;
 import net.minecraft.world.PersistentState;
 import net.minecraft.world.PersistentStateManager;
 import net.minecraft.world.World;
 
-import java.util.HashMap;
-import java.util.Objects;
-import java.util.UUID;
+import java.io.File;
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 public class ServerState extends PersistentState {
-    public HashMap<UUID, PlayerState> players = new HashMap<>();
+    private final HashMap<UUID, PlayerState> players = new HashMap<>();
+    private final Set<UUID> dirtyPlayers = new HashSet<>();
+    private final Map<UUID, NbtCompound> playerNbt = new HashMap<>(); // Only used when graves aren't sharded
+    private boolean legacyPlayersImported = false;
+    private PlayerStateStorage storage = null;
+    private GraveJournal journal = null;
+    private GravePayloadStore payloads = null;
+    private StorageWorker worker = null;
+    private MinecraftServer server = null;
+    private boolean attached = false;
 
     public static ServerState createFromNbt(NbtCompound tag) {
         ServerState serverState = new ServerState();
@@ -25,10 +36,8 @@ public class ServerState extends PersistentState {
         // Extract every player's data from the provided tag
         NbtCompound playersTag = tag.getCompound("players");
         playersTag.getKeys().forEach(key -> {
-            PlayerState playerState = new PlayerState();
-
             // Get graves and uuid from nbt
-            playerState.graves = (NbtList) playersTag.getCompound(key).get("graves");
+            PlayerState playerState = PlayerState.fromNbt(playersTag.getCompound(key));
             UUID uuid = UUID.fromString(key);
 
             // Store data in server state instance
@@ -40,21 +49,138 @@ public class ServerState extends PersistentState {
 
     @Override
     public NbtCompound writeNbt(NbtCompound nbt) {
-        // Store each player's data in a single nbt tag
+        // In sharded mode only players whose graves changed are written, each to their own file
+        if (storage != null) {
+            dirtyPlayers.removeIf(uuid -> {
+                PlayerState playerState = players.get(uuid);
+                if (playerState == null) return true;
+
+                try {
+                    storage.save(uuid, playerState);
+                    return true;
+                } catch (IOException e) {
+                    // The player stays dirty, so their shard is written again on the next save
+                    System.err.printf("[%s] Unable to save grave data for %s: %s\n", Graves.MOD_ID, uuid,
+                        e.getMessage());
+                    return false;
+                }
+            });
+
+            nbt.putBoolean("sharded", true);
+            return nbt;
+        }
+
+        // Store each player's data in a single nbt tag; only players whose graves changed are serialized again,
+        // everyone else's last serialized nbt is reused as it's never modified once written
         NbtCompound playersNbt = new NbtCompound();
 
         players.forEach((UUID, playerData) -> {
-            NbtCompound playerNbt = new NbtCompound();
-            playerNbt.put("graves", playerData.graves);
-            playersNbt.put(String.valueOf(UUID), playerNbt);
+            NbtCompound playerTag = playerNbt.get(UUID);
+
+            if (playerTag == null || dirtyPlayers.contains(UUID)) {
+                playerTag = playerData.writeNbt(new NbtCompound());
+                playerNbt.put(UUID, playerTag);
+            }
+
+            playersNbt.put(String.valueOf(UUID), playerTag);
         });
 
         // Put all players nbt into the server state's nbt
         nbt.put("players", playersNbt);
+        dirtyPlayers.clear();
 
         return nbt;
     }
 
+    /**
+     * Takes a snapshot of the changed graves on the server thread and hands it to the storage worker, which
+     * compresses and writes it; the journal is compacted once the snapshot and every payload it refers to have been
+     * written.
+     *
+     * @param file File
+     */
+    @Override
+    public void save(File file) {
+        if (!isDirty()) return;
+
+        // The state was never attached to a server; save it the vanilla way
+        if (worker == null) {
+            super.save(file);
+            return;
+        }
+
+        // The snapshot only holds summaries, so payloads are queued ahead of it; until they have been stored the
+        // journal holds their only durable copy
+        journal.flush();
+        payloads.retryFailedWrites();
+        payloads.flush();
+        List<GraveRecord> unstored = payloads.getUnstored();
+
+        // Summaries are written into fresh compounds, so the snapshot never shares NBT with the live state
+        Map<UUID, NbtCompound> shardSnapshots = new HashMap<>();
+
+        if (storage != null) {
+            for (UUID uuid : dirtyPlayers) {
+                PlayerState playerState = players.get(uuid);
+                if (playerState != null) shardSnapshots.put(uuid, playerState.writeNbt(new NbtCompound()));
+            }
+
+            dirtyPlayers.clear();
+        }
+
+        NbtCompound snapshot = new NbtCompound();
+        snapshot.put("data", writeNbt(new NbtCompound()));
+        NbtHelper.putDataVersion(snapshot);
+        setDirty(!dirtyPlayers.isEmpty());
+
+        PlayerStateStorage shardStorage = storage;
+        PlayerStateStorage legacyShards = legacyPlayersImported ? new PlayerStateStorage(server) : null;
+        legacyPlayersImported = false;
+
+        AtomicBoolean written = new AtomicBoolean(false);
+
+        worker.execute(() -> {
+            Set<UUID> failed = new HashSet<>();
+
+            shardSnapshots.forEach((uuid, nbt) -> {
+                try {
+                    shardStorage.write(uuid, nbt);
+                } catch (IOException e) {
+                    System.err.printf("[%s] Unable to save grave data for %s: %s\n", Graves.MOD_ID, uuid,
+                        e.getMessage());
+                    failed.add(uuid);
+                }
+            });
+
+            boolean snapshotFailed = false;
+
+            try {
+                PlayerStateStorage.writeCompressed(snapshot, file.toPath());
+            } catch (IOException e) {
+                System.err.printf("[%s] Unable to save grave data: %s\n", Graves.MOD_ID, e.getMessage());
+                snapshotFailed = true;
+            }
+
+            // Anything that failed is saved again on the next save; until then the journal is kept
+            if (snapshotFailed || !failed.isEmpty()) {
+                server.execute(() -> {
+                    dirtyPlayers.addAll(failed);
+                    if (legacyShards != null) legacyPlayersImported = true;
+                    markDirty();
+                });
+                return;
+            }
+
+            written.set(true);
+
+            // Shards that were folded back into the single file are no longer needed once it has been written
+            if (legacyShards != null) legacyShards.listPlayers().forEach(legacyShards::delete);
+        });
+
+        // Every journaled event is now part of the saved snapshot; the payloads they carry must also have been stored
+        journal.compact(() -> written.get() && unstored.stream().allMatch(payloads::isStored));
+    }
+
     //? if >=1.20.2 {
     /*private static final Type<ServerState> type = new Type<>(
         ServerState::new,
@@ -63,12 +189,88 @@ public class ServerState extends PersistentState {
     );
     *///?}
 
+    /**
+     * Binds the state to the server's save directory and resolves the storage mode; graves stored in one mode are
+     * migrated into the other the first time the state is saved.
+     *
+     * @param server MinecraftServer
+     */
+    private void attach(MinecraftServer server) {
+        this.server = server;
+        this.attached = true;
+
+        PlayerStateStorage shards = new PlayerStateStorage(server);
+
+        if (GravesConfig.getConfig().server.shardedGraveStorage) {
+            this.storage = shards;
+
+            // Move any players kept in the single file into their own shards
+            if (!players.isEmpty()) {
+                dirtyPlayers.addAll(players.keySet());
+                markDirty();
+            }
+        } else {
+            // Fold any existing shards back into the single file
+            for (UUID uuid : shards.listPlayers()) {
+                if (players.containsKey(uuid)) continue;
+
+                PlayerState playerState = shards.load(uuid);
+                if (playerState != null) players.put(uuid, playerState);
+                legacyPlayersImported = true;
+            }
+
+            if (legacyPlayersImported) markDirty();
+        }
+
+        this.worker = new StorageWorker();
+        this.payloads = new GravePayloadStore(shards.getDirectory(), worker);
+
+        // Recover any changes that were journaled but not saved before the server last stopped
+        this.journal = new GraveJournal(shards.getDirectory(), worker);
+        int replayed = journal.replay(this);
+
+        if (replayed > 0) {
+            System.out.printf("[%s] Recovered %d grave changes from the journal.\n", Graves.MOD_ID, replayed);
+            markDirty();
+        }
+
+        // Load the item pools ahead of any restore, then move payloads from older saves and the journal into the
+        // payload store
+        players.forEach((uuid, playerState) -> {
+            payloads.load(uuid);
+            storePayloads(uuid, playerState);
+        });
+    }
+
+    /**
+     * Writes any payloads the player's graves still hold in memory to the payload store; the player's state is
+     * then rewritten without them.
+     *
+     * @param uuid UUID
+     * @param playerState PlayerState
+     */
+    private void storePayloads(UUID uuid, PlayerState playerState) {
+        boolean migrated = false;
+
+        for (GraveRecord record : playerState.getGraves()) {
+            if (record.getPendingPayload() == null) continue;
+
+            payloads.write(uuid, record);
+            migrated = true;
+        }
+
+        if (migrated) {
+            dirtyPlayers.add(uuid);
+            markDirty();
+        }
+    }
+
     public static ServerState getServerState(MinecraftServer server) {
         if (server == null) return null;
 
         PersistentStateManager persistentStateManager = Objects.requireNonNull(server.getWorld(World.OVERWORLD)).getPersistentStateManager();
 
-        return persistentStateManager.getOrCreate(
+        ServerState serverState = persistentStateManager.getOrCreate(
             //? if >=1.20.2 {
             /*type,
             *///?} else {
@@ -77,6 +279,10 @@ public class ServerState extends PersistentState {
             //?}
             Graves.MOD_ID
         );
+
+        if (!serverState.attached) serverState.attach(server);
+
+        return serverState;
     }
 
     public static PlayerState getPlayerState(MinecraftServer server, UUID uuid) {
@@ -84,23 +290,190 @@ public class ServerState extends PersistentState {
         ServerState serverState = getServerState(server);
 
         // Get or create player state by UUID
-        PlayerState playerState = serverState.players.computeIfAbsent(uuid, id -> new PlayerState());
+        return serverState.getOrLoadPlayerState(uuid);
+    }
+
+    /**
+     * Get or create a player's state; shards are only read the first time a player is accessed.
+     *
+     * @param uuid UUID
+     * @return PlayerState
+     */
+    PlayerState getOrLoadPlayerState(UUID uuid) {
+        PlayerState playerState = players.get(uuid);
+
+        if (playerState == null) {
+            if (storage != null) playerState = storage.load(uuid);
+            if (playerState == null) playerState = new PlayerState();
+            players.put(uuid, playerState);
+
+            if (payloads != null) {
+                payloads.load(uuid);
+                storePayloads(uuid, playerState);
+            }
+        }
 
         return playerState;
     }
 
-    public static void storePlayerGrave(PlayerEntity player, GraveBlockEntity graveEntity) {
-        if (graveEntity == null || player == null) return;
+    /**
+     * Retrieves every stored player's state; in sharded mode this loads every shard that hasn't been accessed yet.
+     *
+     * @param server MinecraftServer
+     * @return {@code Map<UUID, PlayerState>}
+     */
+    public static Map<UUID, PlayerState> getAllPlayerStates(MinecraftServer server) {
+        ServerState serverState = getServerState(server);
+
+        if (serverState.storage != null) {
+            for (UUID uuid : serverState.storage.listPlayers()) {
+                getPlayerState(server, uuid);
+            }
+        }
+
+        return Collections.unmodifiableMap(serverState.players);
+    }
+
+    /**
+     * Marks the given player's graves as changed so they are written on the next save, which also compacts the
+     * journal events that led to the change.
+     *
+     * @param uuid UUID
+     */
+    void markPlayerChanged(UUID uuid) {
+        dirtyPlayers.add(uuid);
+        markDirty();
+    }
+
+    /**
+     * Cleans up after a grave that was removed from a player's state.
+     *
+     * @param uuid UUID of the grave owner
+     * @param record GraveRecord or null
+     */
+    void discardGrave(UUID uuid, GraveRecord record) {
+        if (record != null && payloads != null) payloads.delete(uuid, record);
+    }
+
+    /**
+     * Loads the full NBT of a stored grave, reading its payload from disk.
+     *
+     * @param server MinecraftServer
+     * @param uuid UUID of the grave owner
+     * @param record GraveRecord
+     * @return NbtCompound or null if the payload could not be read
+     */
+    public static NbtCompound loadGrave(MinecraftServer server, UUID uuid, GraveRecord record) {
+        NbtCompound payload = getServerState(server).payloads.read(uuid, record);
+        if (payload == null) return null;
+
+        return payload.copy().copyFrom(record.toNbt());
+    }
+
+    /**
+     * Marks the grave created at the given time and position as retrieved.
+     *
+     * @param server MinecraftServer
+     * @param uuid UUID of the grave owner
+     * @param mstime long
+     * @param pos BlockPos
+     */
+    public static void markGraveRetrieved(MinecraftServer server, UUID uuid, long mstime, BlockPos pos) {
+        ServerState serverState = getServerState(server);
+        GraveRecord record = serverState.getOrLoadPlayerState(uuid).markRetrieved(mstime, pos);
+        if (record == null) return;
+
+        if (serverState.journal != null) serverState.journal.retrieved(uuid, record.getId());
+        serverState.markPlayerChanged(uuid);
+    }
+
+    /**
+     * Deletes a stored grave.
+     *
+     * @param server MinecraftServer
+     * @param uuid UUID of the grave owner
+     * @param graveId int
+     * @return GraveRecord the deleted grave, or null
+     */
+    public static GraveRecord deleteGrave(MinecraftServer server, UUID uuid, int graveId) {
+        ServerState serverState = getServerState(server);
+        GraveRecord record = serverState.getOrLoadPlayerState(uuid).removeGrave(graveId);
+        if (record == null) return null;
+
+        if (serverState.journal != null) serverState.journal.deleted(uuid, graveId);
+        serverState.discardGrave(uuid, record);
+        serverState.markPlayerChanged(uuid);
+        return record;
+    }
+
+    /**
+     * Writes the journal events logged during this tick, then the payloads written and deleted during it; called at
+     * the end of every server tick.
+     *
+     * @param server MinecraftServer
+     */
+    public static void flushJournal(MinecraftServer server) {
+        ServerState serverState = getServerState(server);
+        if (serverState == null || serverState.journal == null) return;
+
+        serverState.journal.flush();
+        serverState.payloads.flush();
+
+        // Changes that didn't reach the journal are only safe once the state has been saved
+        if (serverState.journal.checkFailed()) {
+            System.err.printf("[%s] Grave changes could not be journaled; saving the grave data.\n", Graves.MOD_ID);
+            serverState.markDirty();
+            serverState.save(server.getSavePath(WorldSavePath.ROOT).resolve("data")
+                .resolve(Graves.MOD_ID + ".dat").toFile());
+        }
+    }
+
+    /**
+     * Ensures the final save compacts the journal; called when the server begins stopping.
+     *
+     * @param server MinecraftServer
+     */
+    public static void prepareForShutdown(MinecraftServer server) {
+        ServerState serverState = getServerState(server);
+        if (serverState != null && !serverState.dirtyPlayers.isEmpty()) serverState.markDirty();
+    }
+
+    /**
+     * Closes the journal and waits for pending writes once the server has stopped and its final save has completed.
+     *
+     * @param server MinecraftServer
+     */
+    public static void closeStorage(MinecraftServer server) {
+        ServerState serverState = getServerState(server);
+        if (serverState == null || serverState.worker == null) return;
+
+        serverState.journal.close();
+        serverState.payloads.flush();
+        serverState.worker.close();
+    }
+
+    /**
+     * Stores a backup of the given grave in the player's state.
+     *
+     * @param player PlayerEntity the grave owner
+     * @param graveEntity GraveBlockEntity
+     * @return GraveRecord the stored backup, or null if grave backups are disabled
+     */
+    public static GraveRecord storePlayerGrave(PlayerEntity player, GraveBlockEntity graveEntity) {
+        if (graveEntity == null || player == null) return null;
 
         MinecraftServer server = Objects.requireNonNull(graveEntity.getWorld()).getServer();
 
         // Get player state
         PlayerState playerState = getPlayerState(server, player.getUuid());
 
+        ServerState serverState = getServerState(server);
+        UUID uuid = player.getUuid();
+
         // Remove all graves and cancel execution if storing graves is disabled
         if (GravesConfig.getConfig().server.storedGravesAmount == 0) {
-            cleanupPlayerGraves(playerState);
-            return;
+            serverState.cleanupPlayerGraves(uuid, playerState);
+            return null;
         }
 
         // Convert GraveBlockEntity into nbt
@@ -116,25 +489,31 @@ public class ServerState extends PersistentState {
         graveNbt.putString("dimension", String.valueOf(graveEntity.getWorld().getDimensionKey().getValue()));
 
         // Store the grave nbt in the global state
-        playerState.graves.add(graveNbt);
+        GraveRecord record = playerState.addGrave(graveNbt);
+        serverState.journal.created(uuid, record, record.getPendingPayload());
+        serverState.payloads.write(uuid, record);
 
         // Remove any old graves above the stored graves limit
-        cleanupPlayerGraves(playerState);
+        serverState.cleanupPlayerGraves(uuid, playerState);
 
         // Mark dirty to commit server state
-        getServerState(server).markDirty();
+        serverState.markPlayerChanged(uuid);
+        return record;
     }
 
-    private static void cleanupPlayerGraves(PlayerState playerState) {
+    private void cleanupPlayerGraves(UUID uuid, PlayerState playerState) {
         GravesConfig config = GravesConfig.getConfig();
         int storedGravesAmount = config.server.storedGravesAmount;
-        int amountOfStoredGraves = playerState.graves.size();
+        int amountOfStoredGraves = playerState.getGraveCount();
         int difference = amountOfStoredGraves - storedGravesAmount;
 
         // The list goes from oldest to newest; thus removing the first entry as many times
         // as the difference between the two values will remove only old graves.
         if (difference > 0) {
-            playerState.graves.subList(0, difference).clear();
+            List<GraveRecord> removed = playerState.removeOldestGraves(difference);
+            journal.trimmed(uuid, removed.stream().map(GraveRecord::getId).toList());
+            removed.forEach(record -> discardGrave(uuid, record));
+            markPlayerChanged(uuid);
         }
     }
 }
@@ -0,0 +1,38 @@
+package me.mgin.graves.state;
+
+import me.mgin.graves.Graves;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A single background thread shared by every grave storage task. Running the journal, payload writes and
+ * compaction on one thread guarantees they hit the disk in the order they were submitted.
+ */
+public class StorageWorker {
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "Forgotten Graves Storage");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public void execute(Runnable task) {
+        executor.execute(task);
+    }
+
+    /**
+     * Waits for every submitted task to finish and stops the thread.
+     */
+    public void close() {
+        executor.shutdown();
+
+        try {
+            if (!executor.awaitTermination(30, TimeUnit.SECONDS)) {
+                System.err.printf("[%s] Timed out waiting for grave storage to finish.\n", Graves.MOD_ID);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package me.mgin.graves.tags;
+
+import me.mgin.graves.versioned.VersionedCode;
+import net.minecraft.block.Block;
+import net.minecraft.block.BlockState;
+import net.minecraft.block.Blocks;
+
+/**
+ * Holds what grave placement needs to know about every block state as a set of flags, indexed by the state's raw
+ * id. The table is rebuilt whenever tags are (re)loaded, so checking a block against the grave block tags is a
+ * single array read.
+ */
+public class BlockClassification {
+    public static final int AIR = 1;
+    public static final int LIQUID = 1 << 1;
+    public static final int AIR_BLOCK = 1 << 2;
+    public static final int WATER_BLOCK = 1 << 3;
+    public static final int LAVA_BLOCK = 1 << 4;
+    public static final int REPLACEABLE = 1 << 5;
+    public static final int DO_NOT_REPLACE = 1 << 6;
+    public static final int SINK_THROUGH = 1 << 7;
+    public static final int BLOCK_ENTITY = 1 << 8;
+
+    private static volatile int[] table = new int[0];
+
+    /**
+     * Classifies every registered block state; called whenever tags are loaded.
+     */
+    public static void rebuild() {
+        int[] rebuilt = new int[Block.STATE_IDS.size()];
+
+        for (BlockState state : Block.STATE_IDS) {
+            rebuilt[Block.getRawIdFromState(state)] = classify(state);
+        }
+
+        table = rebuilt;
+    }
+
+    /**
+     * Get the classification flags of the given block state.
+     *
+     * @param state BlockState
+     * @return int
+     */
+    public static int get(BlockState state) {
+        int[] flags = table;
+        int id = Block.getRawIdFromState(state);
+
+        // Tags have not been loaded yet
+        if (id < 0 || id >= flags.length) return classify(state);
+        return flags[id];
+    }
+
+    public static boolean is(BlockState state, int flag) {
+        return (get(state) & flag) != 0;
+    }
+
+    private static int classify(BlockState state) {
+        int flags = 0;
+
+        if (state.isAir()) flags |= AIR;
+        if (state.isLiquid()) flags |= LIQUID;
+        if (state.isOf(Blocks.AIR)) flags |= AIR_BLOCK;
+        if (state.isOf(Blocks.WATER)) flags |= WATER_BLOCK;
+        if (state.isOf(Blocks.LAVA)) flags |= LAVA_BLOCK;
+        if (state.hasBlockEntity()) flags |= BLOCK_ENTITY;
+        if (VersionedCode.Tags.blockTagContains(state, GraveBlockTags.REPLACEABLE)) flags |= REPLACEABLE;
+        if (VersionedCode.Tags.blockTagContains(state, GraveBlockTags.DO_NOT_REPLACE)) flags |= DO_NOT_REPLACE;
+        if (VersionedCode.Tags.blockTagContains(state, GraveBlockTags.SINK_THROUGH)) flags |= SINK_THROUGH;
+
+        return flags;
+    }
+}
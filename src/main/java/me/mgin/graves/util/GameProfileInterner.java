@@ -0,0 +1,77 @@
+package me.mgin.graves.util;
+
+import com.mojang.authlib.GameProfile;
+import com.mojang.authlib.properties.Property;
+import me.mgin.graves.versioned.VersionedCode;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+
+/**
+ * Shares a single GameProfile instance between every grave of the same owner or skull, keyed by its id, name and
+ * skin texture. Profiles are only weakly held: once no grave uses a profile anymore it's dropped.
+ * <p>
+ * Interned profiles must not be modified. Used by both the server and the client thread, hence the synchronization.
+ */
+public class GameProfileInterner {
+    private static final Map<Key, Entry> profiles = new HashMap<>();
+    private static final ReferenceQueue<GameProfile> collected = new ReferenceQueue<>();
+
+    private record Key(UUID id, String name, int textures) {}
+
+    private static class Entry extends WeakReference<GameProfile> {
+        private final Key key;
+
+        Entry(Key key, GameProfile profile) {
+            super(profile, collected);
+            this.key = key;
+        }
+    }
+
+    /**
+     * Get the shared instance of an identical profile, or make the given profile the shared instance.
+     *
+     * @param profile GameProfile or null
+     * @return GameProfile
+     */
+    public static synchronized GameProfile intern(GameProfile profile) {
+        if (profile == null) return null;
+        expunge();
+
+        String textures = getTextures(profile);
+        Key key = new Key(profile.getId(), profile.getName(), Objects.hashCode(textures));
+        Entry entry = profiles.get(key);
+        GameProfile interned = entry != null ? entry.get() : null;
+
+        if (interned == null) {
+            profiles.put(key, new Entry(key, profile));
+            return profile;
+        }
+
+        // Different textures that happen to share a hash aren't interned
+        return Objects.equals(getTextures(interned), textures) ? interned : profile;
+    }
+
+    /**
+     * Get the value of the profile's skin texture property, if it has one.
+     */
+    private static String getTextures(GameProfile profile) {
+        Iterator<Property> textures = profile.getProperties().get("textures").iterator();
+        return textures.hasNext() ? VersionedCode.getPropertyValue(textures.next()) : null;
+    }
+
+    /**
+     * Removes the entries of profiles that have been garbage collected.
+     */
+    private static void expunge() {
+        for (Object reference; (reference = collected.poll()) != null; ) {
+            Entry entry = (Entry) reference;
+            profiles.remove(entry.key, entry);
+        }
+    }
+}
@@ -6,6 +6,7 @@ import net.minecraft.inventory.Inventories;
 import net.minecraft.item.ItemStack;
 import net.minecraft.nbt.NbtCompound;
 import net.minecraft.nbt.NbtElement;
+import net.minecraft.nbt.NbtList;
 import net.minecraft.text.Text;
 import net.minecraft.util.collection.DefaultedList;
 import net.minecraft.util.math.BlockPos;
@@ -13,6 +14,22 @@ import net.minecraft.util.math.BlockPos;
 import java.util.Date;
 
 public class NbtHelper {
+    /**
+     * The version of the grave NBT format, stored in every grave as {@code GraveDataVersion}. Graves stored with an
+     * older version are passed through {@link #upgradeOldGraves} when read; bump it whenever a new upgrade is added.
+     */
+    public static final int GRAVE_DATA_VERSION = 1;
+
+    /**
+     * The version of the compact inventory format; stored in every inventory as {@code V}.
+     */
+    public static final byte INVENTORY_FORMAT = 1;
+
+    /**
+     * The size of the vanilla player inventory, which compact inventories of that size don't store.
+     */
+    public static final int VANILLA_INVENTORY_SIZE = 41;
+
     /**
      * Read an inventory from NBT.
      *
@@ -22,20 +39,49 @@ public class NbtHelper {
      */
     static public DefaultedList<ItemStack> readInventory(String key, NbtCompound nbt) {
         if (nbt.contains(key)) {
-            int itemCount = nbt.getCompound("ItemCount").getInt(key);
+            NbtCompound inventory = nbt.getCompound(key);
 
-            DefaultedList<ItemStack> stacks = DefaultedList.ofSize(itemCount, ItemStack.EMPTY);
+            if (!isCompactInventory(inventory)) {
+                int itemCount = nbt.getCompound("ItemCount").getInt(key);
+                DefaultedList<ItemStack> stacks = DefaultedList.ofSize(itemCount, ItemStack.EMPTY);
+                Inventories.readNbt(inventory, stacks);
+                return stacks;
+            }
 
-            Inventories.readNbt(nbt.getCompound(key), stacks);
-
-            return stacks;
+            return decodeInventory(inventory);
         }
 
         return DefaultedList.ofSize(0);
     }
 
     /**
-     * Write an inventory to NBT.
+     * Decodes an inventory in the compact inventory format.
+     *
+     * @param inventory NbtCompound
+     * @return DefaultedList.ItemStack
+     */
+    public static DefaultedList<ItemStack> decodeInventory(NbtCompound inventory) {
+        int size = inventory.contains("Size") ? inventory.getInt("Size") : VANILLA_INVENTORY_SIZE;
+        DefaultedList<ItemStack> stacks = DefaultedList.ofSize(size, ItemStack.EMPTY);
+        NbtList items = inventory.getList("Stacks", NbtElement.COMPOUND_TYPE);
+        long[] slots = inventory.getLongArray("Slots");
+        int next = 0;
+
+        // Every set bit of the slot bitmap holds the next stack
+        for (int word = 0; word < slots.length; word++) {
+            for (long bits = slots[word]; bits != 0 && next < items.size(); bits &= bits - 1) {
+                int slot = (word << 6) + Long.numberOfTrailingZeros(bits);
+                ItemStack stack = ItemStack.fromNbt(items.getCompound(next++));
+                if (slot < size) stacks.set(slot, stack);
+            }
+        }
+
+        return stacks;
+    }
+
+    /**
+     * Write an inventory to NBT in the compact inventory format: a bitmap of the slots that hold a stack, followed by
+     * only those stacks.
      *
      * @param key    String
      * @param stacks DefaultedList.ItemStack
@@ -46,29 +92,57 @@ public class NbtHelper {
         if (stacks == null)
             return nbt;
 
-        // Write item count
-        NbtCompound itemCount = new NbtCompound();
+        // Store the inventory
+        nbt.put(key, encodeInventory(stacks));
 
-        if (nbt.contains("ItemCount"))
-            itemCount = nbt.getCompound("ItemCount");
+        return nbt;
+    }
 
-        itemCount.putInt(key, stacks.size());
-        nbt.put("ItemCount", itemCount);
+    /**
+     * Encodes an inventory in the compact inventory format.
+     *
+     * @param stacks DefaultedList.ItemStack
+     * @return NbtCompound
+     */
+    public static NbtCompound encodeInventory(DefaultedList<ItemStack> stacks) {
+        NbtCompound inventory = new NbtCompound();
+        long[] slots = new long[(stacks.size() + 63) >> 6];
+        NbtList items = new NbtList();
 
-        // Store the inventory
-        nbt.put(key, Inventories.writeNbt(new NbtCompound(), stacks, true));
+        for (int slot = 0; slot < stacks.size(); slot++) {
+            ItemStack stack = stacks.get(slot);
+            if (stack.isEmpty()) continue;
 
-        return nbt;
+            slots[slot >> 6] |= 1L << slot;
+            items.add(stack.writeNbt(new NbtCompound()));
+        }
+
+        inventory.putByte("V", INVENTORY_FORMAT);
+        if (stacks.size() != VANILLA_INVENTORY_SIZE) inventory.putInt("Size", stacks.size());
+        inventory.putLongArray("Slots", slots);
+        inventory.put("Stacks", items);
+
+        return inventory;
+    }
+
+    /**
+     * Determines whether the given inventory NBT uses the compact inventory format.
+     *
+     * @param inventory NbtCompound
+     * @return boolean
+     */
+    public static boolean isCompactInventory(NbtCompound inventory) {
+        return inventory.contains("V", NbtElement.BYTE_TYPE) && inventory.contains("Stacks", NbtElement.LIST_TYPE);
     }
 
     /**
-     * Wrapper for <i>NbtHelper.toGameProfile</i>.
+     * Wrapper for <i>NbtHelper.toGameProfile</i>; the profile is interned, see {@link GameProfileInterner}.
      *
      * @param nbt NbtCompound
      * @return GameProfile
      */
     public static GameProfile toGameProfile(NbtCompound nbt) {
-        return net.minecraft.nbt.NbtHelper.toGameProfile(nbt);
+        return GameProfileInterner.intern(net.minecraft.nbt.NbtHelper.toGameProfile(nbt));
     }
 
     /**
@@ -102,6 +176,16 @@ public class NbtHelper {
         return net.minecraft.nbt.NbtHelper.toPrettyPrintedText(nbt);
     }
 
+    /**
+     * Wrapper for <i>NbtHelper.putDataVersion</i>.
+     *
+     * @param nbt NbtCompound
+     * @return NbtCompound
+     */
+    public static NbtCompound putDataVersion(NbtCompound nbt) {
+        return net.minecraft.nbt.NbtHelper.putDataVersion(nbt);
+    }
+
     /**
      * Creates a new BlockPos based on stored coordinates in the given NBT.
      *
@@ -135,6 +219,9 @@ public class NbtHelper {
         if (nbt.contains("GraveSkull", NbtElement.STRING_TYPE))
             nbt = removeOldCustomSkullTexture(nbt);
 
+        if (nbt.contains("ItemCount", NbtElement.COMPOUND_TYPE))
+            nbt = compactInventories(nbt);
+
         return nbt;
     }
 
@@ -196,6 +283,51 @@ public class NbtHelper {
         return nbt;
     }
 
+    /**
+     * Converts the inventories listed in ItemCount to the compact inventory format. Stacks are moved as they are,
+     * without being decoded.
+     *
+     * @param nbt NbtCompound
+     * @return NbtCompound
+     */
+    private static NbtCompound compactInventories(NbtCompound nbt) {
+        NbtCompound itemCount = nbt.getCompound("ItemCount");
+
+        for (String key : itemCount.getKeys()) {
+            if (!nbt.contains(key, NbtElement.COMPOUND_TYPE)) continue;
+
+            int size = itemCount.getInt(key);
+            NbtList oldItems = nbt.getCompound(key).getList("Items", NbtElement.COMPOUND_TYPE);
+
+            // Stacks are stored in slot order
+            NbtCompound[] bySlot = new NbtCompound[size];
+            for (int i = 0; i < oldItems.size(); i++) {
+                NbtCompound stack = oldItems.getCompound(i).copy();
+                int slot = stack.getByte("Slot") & 255;
+                stack.remove("Slot");
+                if (slot < size) bySlot[slot] = stack;
+            }
+
+            long[] slots = new long[(size + 63) >> 6];
+            NbtList items = new NbtList();
+            for (int slot = 0; slot < size; slot++) {
+                if (bySlot[slot] == null) continue;
+                slots[slot >> 6] |= 1L << slot;
+                items.add(bySlot[slot]);
+            }
+
+            NbtCompound inventory = new NbtCompound();
+            inventory.putByte("V", INVENTORY_FORMAT);
+            if (size != VANILLA_INVENTORY_SIZE) inventory.putInt("Size", size);
+            inventory.putLongArray("Slots", slots);
+            inventory.put("Stacks", items);
+            nbt.put(key, inventory);
+        }
+
+        nbt.remove("ItemCount");
+        return nbt;
+    }
+
     private static NbtCompound removeOldCustomSkullTexture(NbtCompound nbt) {
         nbt.remove("GraveSkull");
         return nbt;
@@ -1,16 +1,23 @@
 package me.mgin.graves.versioned;
 
+import com.mojang.authlib.properties.Property;
 import me.mgin.graves.Graves;
 import net.minecraft.block.Block;
 import net.minecraft.block.BlockState;
 import net.minecraft.item.Item;
 import net.minecraft.item.ItemStack;
+import net.minecraft.nbt.NbtCompound;
+import net.minecraft.nbt.NbtIo;
 import net.minecraft.registry.RegistryKeys;
 import net.minecraft.registry.tag.TagKey;
 import net.minecraft.server.network.ServerPlayerEntity;
 import net.minecraft.text.Text;
 import net.minecraft.util.Identifier;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
 /**
  * This class contains abstractions that are used in conjunction with stonecutter-kt
  * to keep the rest of the codebase more version agnostic.
@@ -39,6 +46,26 @@ public class VersionedCode {
         //?}
     }
 
+    public static String getPropertyValue(Property property) {
+        //? if >1.20.2 {
+        /*return property.value();
+        *///?} else {
+        return property.getValue();
+        //?}
+    }
+
+    public static NbtCompound readNbt(DataInput input) throws IOException {
+        //? if >1.20.2 {
+        /*return NbtIo.readCompound(input);
+        *///?} else {
+        return NbtIo.read(input);
+        //?}
+    }
+
+    public static void writeNbt(NbtCompound nbt, DataOutput output) throws IOException {
+        NbtIo.write(nbt, output);
+    }
+
     public static class Tags {
         // Block Tag Methods
         public static TagKey<Block> createCustomBlockTag(String name) {